@@ -66,6 +66,50 @@
     <version>${confluent.version}</version>
   </dependency>
 
+  <!-- Sink JDBC (optionnel) : Oracle en cible, H2 en mode Oracle pour le local -->
+  <dependency>
+    <groupId>org.springframework.boot</groupId>
+    <artifactId>spring-boot-starter-jdbc</artifactId>
+  </dependency>
+  <dependency>
+    <groupId>com.oracle.database.jdbc</groupId>
+    <artifactId>ojdbc11</artifactId>
+    <scope>runtime</scope>
+  </dependency>
+  <dependency>
+    <groupId>com.h2database</groupId>
+    <artifactId>h2</artifactId>
+    <scope>runtime</scope>
+  </dependency>
+
+  <!-- Métriques du buffer de publication (exposées si un MeterRegistry est présent) -->
+  <dependency>
+    <groupId>io.micrometer</groupId>
+    <artifactId>micrometer-core</artifactId>
+  </dependency>
+
+  <!-- Bancs (src/test/java, com.example.bench.remit) : hors de l'artefact et du scan de l'application -->
+  <dependency>
+    <groupId>com.acme</groupId>
+    <artifactId>bench-support</artifactId>
+    <version>${project.version}</version>
+    <scope>test</scope>
+  </dependency>
+
+  <!-- Tests unitaires (src/test/java) -->
+  <dependency>
+    <groupId>org.junit.jupiter</groupId>
+    <artifactId>junit-jupiter-api</artifactId>
+    <version>5.10.0</version>
+    <scope>test</scope>
+  </dependency>
+  <dependency>
+    <groupId>org.junit.jupiter</groupId>
+    <artifactId>junit-jupiter-engine</artifactId>
+    <version>5.10.0</version>
+    <scope>test</scope>
+  </dependency>
+
   <!-- Optionnel: Jakarta Validation -->
   <dependency>
     <groupId>org.springframework.boot</groupId>
@@ -107,6 +151,19 @@ sim:
   credit-ratio: 0.5
   period: 30s
   enabled: true
+  route: one-topic                          # one-topic (RemittanceRoute) | processors (RemittanceRouteProcessors)
+  checkpoint-dir: /data/remit-sim           # optionnel : horloge, eventId publiés et lots en cours conservés entre deux exécutions
+  clock:
+    mode: VIRTUAL                     # REAL (défaut) | VIRTUAL
+    start: 2026-10-18T08:00:00Z       # instant simulé au démarrage (VIRTUAL)
+    speed: 96                         # 8 h de trafic en 5 min
+    node-id: pod-a                    # optionnel : préfixe des batchId si plusieurs simulateurs
+  publish:
+    enabled: true                     # le timer dépose les lots, un thread dédié publie vers Kafka
+    queue-capacity: 64                # lots en mémoire ; au-delà, débordement sur disque
+    spill-dir: /data/remit-sim/spill  # segments append-only, relus dans l'ordre quand le broker suit
+    segment-size: 64MB
+    retry-backoff: 1s                 # attente avant de réessayer un lot dont l'envoi a échoué
 
 kafka:
   bootstrap: localhost:9092
@@ -119,7 +176,360 @@ camel:
 spring:
   main:
     web-application-type: none
+  datasource:
+    url: jdbc:oracle:thin:@localhost:1521/XEPDB1
+    username: APP_USER
+    password: ${APP_PWD}
+    hikari:
+      maximum-pool-size: 8              # >= sim.jdbc.writers
+
+---
+# profil local : H2 en mémoire, mode Oracle, même DDL que schema.sql
+spring:
+  config:
+    activate:
+      on-profile: local
+  datasource:
+    url: jdbc:h2:mem:app;MODE=Oracle;DB_CLOSE_DELAY=-1
+    username: sa
+    password:
+  sql:
+    init:
+      mode: always
+      schema-locations: classpath:db/remittance-schema.sql
+sim:
+  jdbc:
+    enabled: true
+    batch-size: 5000                    # lignes par executeBatch (array binding côté Oracle)
+    commit-every: 50000                 # lignes par transaction
+    commit-max-delay: 1s                # commit au plus tard après ce délai
+    writers: 4                          # connexions d'écriture en parallèle
+    queue-capacity: 256                 # lots en attente ; au-delà la route attend
+
+
+
+
+package com.example.remit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+@ConfigurationProperties(prefix = "sim")
+public class SimProperties {
+  private String currency = "EUR";
+  private int transactionsPerBatch = 50;
+  private BigDecimal minAmount = new BigDecimal("1.00");
+  private BigDecimal maxAmount = new BigDecimal("200.00");
+  private double creditRatio = 0.5;
+  private Duration period = Duration.ofSeconds(30);
+  private boolean enabled = true;
+  private Path checkpointDir;
+  private final Clock clock = new Clock();
+
+  public String getCurrency() { return currency; }
+  public void setCurrency(String currency) { this.currency = currency; }
+  public int getTransactionsPerBatch() { return transactionsPerBatch; }
+  public void setTransactionsPerBatch(int transactionsPerBatch) { this.transactionsPerBatch = transactionsPerBatch; }
+  public BigDecimal getMinAmount() { return minAmount; }
+  public void setMinAmount(BigDecimal minAmount) { this.minAmount = minAmount; }
+  public BigDecimal getMaxAmount() { return maxAmount; }
+  public void setMaxAmount(BigDecimal maxAmount) { this.maxAmount = maxAmount; }
+  public double getCreditRatio() { return creditRatio; }
+  public void setCreditRatio(double creditRatio) { this.creditRatio = creditRatio; }
+  public Duration getPeriod() { return period; }
+  public void setPeriod(Duration period) { this.period = period; }
+  public boolean isEnabled() { return enabled; }
+  public void setEnabled(boolean enabled) { this.enabled = enabled; }
+  /** Répertoire d'état conservé entre deux exécutions (horloge, eventId déjà publiés) ; null = rien n'est conservé. */
+  public Path getCheckpointDir() { return checkpointDir; }
+  public void setCheckpointDir(Path checkpointDir) { this.checkpointDir = checkpointDir; }
+  public Clock getClock() { return clock; }
+
+  /** Horloge de simulation : REAL = temps réel, VIRTUAL = part de `start` et avance `speed` fois plus vite. */
+  public static class Clock {
+    public enum Mode { REAL, VIRTUAL }
+
+    private Mode mode = Mode.REAL;
+    private Instant start;
+    private double speed = 1.0;
+    private String nodeId;
+
+    public Mode getMode() { return mode; }
+    public void setMode(Mode mode) { this.mode = mode; }
+    public Instant getStart() { return start; }
+    public void setStart(Instant start) { this.start = start; }
+    public double getSpeed() { return speed; }
+    public void setSpeed(double speed) { this.speed = speed; }
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+  }
+}
+
+
+
+package com.example.remit.core;
+
+import com.example.remit.config.SimProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Horloge de la simulation (sim.clock). L'instant de départ et nanoTime() sont lus une fois au
+ * démarrage ; ensuite millis() = départ + temps écoulé × speed, calculé depuis nanoTime() : monotone
+ * (insensible aux recalages NTP), sans allocation. Mode REAL : départ = maintenant, speed = 1.
+ *
+ * nextBatchId() : "REM-<millis simulés>" strictement croissant (deux lots dans la même milliseconde
+ * prennent millis+1), préfixé par node-id si plusieurs simulateurs publient sur le même topic.
+ *
+ * Avec sim.checkpoint-dir, chaque nextBatchId() enregistre (fichier remplacé atomiquement) l'instant
+ * simulé et le dernier batchId avant que le lot ne parte : au redémarrage, une horloge VIRTUAL reprend
+ * à cet instant au lieu de revenir à `start`, et aucun batchId déjà émis n'est réutilisé.
+ * Un lot interrompu en cours de publication est complété au redémarrage par BatchJournal.
+ */
+@Component
+public class SimulationClock {
+  private final long startMillis;
+  private final long originNanos;
+  private final double speed;
+  private final String batchPrefix;
+  private final AtomicLong lastBatch = new AtomicLong(Long.MIN_VALUE);
+  private final Path checkpoint; // null = pas de reprise
+  private long lastSaved = Long.MIN_VALUE;
+
+  public SimulationClock(SimProperties props) {
+    SimProperties.Clock c = props.getClock();
+    boolean virtual = c.getMode() == SimProperties.Clock.Mode.VIRTUAL;
+    this.checkpoint = props.getCheckpointDir() == null ? null : props.getCheckpointDir().resolve("clock.properties");
+    Properties saved = load(checkpoint);
+    this.originNanos = System.nanoTime();
+    if (virtual && saved != null) this.startMillis = Long.parseLong(saved.getProperty("millis"));
+    else this.startMillis = virtual && c.getStart() != null ? c.getStart().toEpochMilli() : System.currentTimeMillis();
+    if (saved != null) lastBatch.set(Long.parseLong(saved.getProperty("lastBatch")));
+    this.speed = virtual ? c.getSpeed() : 1.0;
+    this.batchPrefix = c.getNodeId() == null || c.getNodeId().isBlank() ? "REM-" : "REM-" + c.getNodeId() + "-";
+  }
 
+  /** Epoch millis simulés. */
+  public long millis() {
+    long elapsed = System.nanoTime() - originNanos;
+    return startMillis + (speed == 1.0 ? elapsed / 1_000_000L : (long) (elapsed * speed / 1_000_000d));
+  }
+
+  public Instant instant() {
+    return Instant.ofEpochMilli(millis());
+  }
+
+  public String nextBatchId() {
+    long now = millis();
+    long id = lastBatch.accumulateAndGet(now, (prev, cur) -> Math.max(prev + 1, cur));
+    if (checkpoint != null) save(now, id);
+    return batchPrefix + id;
+  }
+
+  private static Properties load(Path file) {
+    if (file == null || !Files.exists(file)) return null;
+    try (InputStream in = Files.newInputStream(file)) {
+      Properties p = new Properties();
+      p.load(in);
+      return p;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read clock checkpoint " + file, e);
+    }
+  }
+
+  // un fsync par lot : négligeable devant l'envoi du lot, et le batchId est durable avant publication
+  private synchronized void save(long millis, long id) {
+    if (id < lastSaved) return; // un appel concurrent a déjà écrit plus loin
+    lastSaved = id;
+    String content = "millis=" + millis + "\nlastBatch=" + id + "\n";
+    Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(checkpoint.getParent());
+      try (FileChannel ch = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+        ch.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.ISO_8859_1)));
+        ch.force(true);
+      }
+      Files.move(tmp, checkpoint, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write clock checkpoint " + checkpoint, e);
+    }
+  }
+}
+
+
+package com.example.remit.core;
+
+import com.example.remit.avro.EventType;
+import com.example.remit.avro.RemittanceEvent;
+import com.example.remit.config.SimProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Journal des lots en cours de publication (sim.checkpoint-dir/open-batches, un fichier par batchId
+ * remplacé atomiquement) : write() enregistre les événements générés du lot avant leur envoi, close()
+ * le supprime une fois le lot publié. Au redémarrage, recover() rend les lots laissés ouverts par un arrêt
+ * brutal ; renvoyés en entier, seuls leurs événements absents de eventIdRepo partent, et réécrits en base
+ * (JdbcEventSink fusionne sur EVENT_ID / BATCH_ID). Avec le sink JDBC, hold() ajoute le commit en base
+ * aux conditions de fermeture : le journal n'est supprimé qu'après le dernier des deux close().
+ * Un lot de la route à processeurs interrompu avant FINALIZATION est complété : le BatchAcc est recalculé
+ * depuis les TRANSACTION du journal (celles qui ont pu partir en font toutes partie) et le FINALIZATION
+ * est journalisé avant d'être renvoyé, donc avec le même eventId si la reprise est elle-même interrompue.
+ * Sans sim.checkpoint-dir, toutes les opérations sont sans effet.
+ */
+@Component
+public class BatchJournal {
+  private static final Logger log = LoggerFactory.getLogger(BatchJournal.class);
+  private static final String SUFFIX = ".batch";
+
+  private final Path dir; // null = pas de journal
+  private final SimulationClock clock;
+  // batchId -> close() encore attendus, pour les lots retenus par hold() ; absent = un seul (l'envoi)
+  private final Map<String, AtomicInteger> holders = new ConcurrentHashMap<>();
+
+  public BatchJournal(SimProperties props, SimulationClock clock) {
+    this.dir = props.getCheckpointDir() == null ? null : props.getCheckpointDir().resolve("open-batches");
+    this.clock = clock;
+  }
+
+  public boolean enabled() { return dir != null; }
+
+  // un fsync par appel, comme le checkpoint de l'horloge : le lot est durable avant son premier envoi
+  public void write(List<RemittanceEvent> batch) {
+    if (dir == null || batch.isEmpty()) return;
+    Path file = file(batch);
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(dir);
+      try (FileChannel ch = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+        ByteBuffer buf = ByteBuffer.wrap(encode(batch));
+        while (buf.hasRemaining()) ch.write(buf);
+        ch.force(true);
+      }
+      Files.move(tmp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write batch journal " + file, e);
+    }
+  }
+
+  /** Retient le lot jusqu'à un close() de plus (commit en base), en plus de celui de l'envoi. */
+  public void hold(List<RemittanceEvent> batch) {
+    if (dir == null || batch.isEmpty()) return;
+    holders.computeIfAbsent(batch.get(0).getBatchId(), k -> new AtomicInteger(1)).incrementAndGet();
+  }
+
+  /** Lot entièrement publié (ou commité en base) : supprimé au dernier close() attendu. */
+  public void close(List<RemittanceEvent> batch) {
+    if (dir == null || batch.isEmpty()) return;
+    String batchId = batch.get(0).getBatchId();
+    AtomicInteger pending = holders.get(batchId);
+    if (pending != null) {
+      if (pending.decrementAndGet() > 0) return;
+      holders.remove(batchId);
+    }
+    try {
+      Files.deleteIfExists(file(batch));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot delete batch journal " + file(batch), e);
+    }
+  }
+
+  /** Lots restés ouverts, par batchId croissant, chacun terminé par son FINALIZATION. */
+  public List<List<RemittanceEvent>> recover() {
+    if (dir == null || !Files.isDirectory(dir)) return List.of();
+    List<List<RemittanceEvent>> open = new ArrayList<>();
+    try (Stream<Path> list = Files.list(dir)) {
+      for (Path p : list.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).sorted().toList()) {
+        List<RemittanceEvent> batch = new ArrayList<>(decode(Files.readAllBytes(p)));
+        if (batch.isEmpty()) {
+          Files.delete(p);
+          continue;
+        }
+        if (batch.get(batch.size() - 1).getEventType() != EventType.FINALIZATION) {
+          batch.add(BatchAcc.of(batch).finalEvent(clock.millis()));
+          write(batch);
+        }
+        open.add(batch);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read batch journal " + dir, e);
+    }
+    if (!open.isEmpty()) log.info("{} lots interrompus repris depuis {}", open.size(), dir);
+    return open;
+  }
+
+  private Path file(List<RemittanceEvent> batch) {
+    return dir.resolve(batch.get(0).getBatchId() + SUFFIX);
+  }
+
+  // trame = [nombre d'événements] puis, par événement, [longueur][encodage Avro single-object]
+  public static byte[] encode(List<RemittanceEvent> batch) throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(batch.size() * 128);
+    DataOutputStream o = new DataOutputStream(buf);
+    o.writeInt(batch.size());
+    for (RemittanceEvent ev : batch) {
+      ByteBuffer b = ev.toByteBuffer();
+      o.writeInt(b.remaining());
+      o.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+    }
+    return buf.toByteArray();
+  }
+
+  public static List<RemittanceEvent> decode(byte[] frame) throws IOException {
+    ByteBuffer b = ByteBuffer.wrap(frame);
+    int n = b.getInt();
+    List<RemittanceEvent> batch = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      int len = b.getInt();
+      batch.add(RemittanceEvent.fromByteBuffer(b.slice(b.position(), len)));
+      b.position(b.position() + len);
+    }
+    return batch;
+  }
+}
 
 
 
@@ -137,13 +547,13 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.ByteBuffer;
-import java.time.OffsetDateTime;
 import java.util.*;
 
 @Service
 public class RemittanceSimulatorService {
 
   private final SimProperties props;
+  private final SimulationClock clock;
   private final Random rnd = new Random(42L);
 
   // Prépare un schema decimal(18,2) pour la conversion BigDecimal -> bytes
@@ -155,12 +565,13 @@ public class RemittanceSimulatorService {
     DEC_SCHEMA = DEC_18_2.addToSchema(s);
   }
 
-  public RemittanceSimulatorService(SimProperties props) {
+  public RemittanceSimulatorService(SimProperties props, SimulationClock clock) {
     this.props = props;
+    this.clock = clock;
   }
 
   public List<RemittanceEvent> simulateOneBatch() {
-    String batchId = "REM-" + System.currentTimeMillis();
+    String batchId = clock.nextBatchId();
     String ccy = props.getCurrency();
     var out = new ArrayList<RemittanceEvent>(props.getTransactionsPerBatch() + 2);
 
@@ -214,7 +625,7 @@ public class RemittanceSimulatorService {
       .setEventType(type)
       .setBatchId(batchId)
       .setEventId(eventId)
-      .setCreatedAt(OffsetDateTime.now().toInstant().toEpochMilli())
+      .setCreatedAt(clock.millis())
       .setCurrency(ccy)
       .setDirection(null)
       .setAmount(null)
@@ -238,32 +649,584 @@ public class RemittanceSimulatorService {
 }
 
 
+package com.example.remit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "sim.jdbc")
+public record JdbcSinkProps(boolean enabled, Integer batchSize, Integer commitEvery, Duration commitMaxDelay,
+                            Integer writers, Integer queueCapacity) {
+  public JdbcSinkProps {
+    if (batchSize == null) batchSize = 5_000;
+    if (commitEvery == null) commitEvery = 50_000;
+    if (commitMaxDelay == null) commitMaxDelay = Duration.ofSeconds(1);
+    if (writers == null) writers = 4;
+    if (queueCapacity == null) queueCapacity = 256;
+  }
+}
+
+
+
+package com.example.remit.sink;
+
+import com.example.remit.avro.EventType;
+import com.example.remit.avro.RemittanceEvent;
+import com.example.remit.avroutil.AvroDecimals;
+import com.example.remit.config.JdbcSinkProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persiste les RemittanceEvent (REMITTANCE_EVENT) et le résumé de chaque remise, tiré de l'événement
+ * FINALIZATION (REMITTANCE_BATCH). write() dépose le lot dans une file bornée ; `writers` threads ont
+ * chacun leur connexion (autocommit off) et leurs PreparedStatement, et regroupent les lignes en
+ * executeBatch de batchSize (array binding Oracle), commit toutes les commitEvery lignes ou après
+ * commitMaxDelay. Les événements d'une même remise restent dans un seul lot, donc sur un seul writer.
+ * Les lignes sont écrites par MERGE sur EVENT_ID / BATCH_ID : un lot rejoué (reprise du BatchJournal)
+ * n'insère que ce qui manque. write(events, onCommit) appelle onCommit une fois le lot commité.
+ */
+@Component
+@ConditionalOnProperty(prefix = "sim.jdbc", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(JdbcSinkProps.class)
+public class JdbcEventSink implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(JdbcEventSink.class);
+
+  // MERGE ... USING dual : la clé est liée deux fois (ON puis VALUES)
+  static final String INSERT_EVENT =
+      "merge into REMITTANCE_EVENT t using dual on (t.EVENT_ID = ?) when not matched then"
+    + " insert (EVENT_ID, BATCH_ID, EVENT_TYPE, CREATED_AT, CURRENCY, DIRECTION, AMOUNT)"
+    + " values (?, ?, ?, ?, ?, ?, ?)";
+  static final String INSERT_BATCH =
+      "merge into REMITTANCE_BATCH t using dual on (t.BATCH_ID = ?) when not matched then"
+    + " insert (BATCH_ID, CURRENCY, CREDIT_COUNT, DEBIT_COUNT, CREDIT_AMOUNT, DEBIT_AMOUNT,"
+    + " TOTAL_AMOUNT, TRANSACTION_COUNT, FINALIZED_AT) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private record Chunk(List<RemittanceEvent> events, Runnable onCommit) { }
+
+  private final DataSource dataSource;
+  private final JdbcSinkProps props;
+  private final BlockingQueue<Chunk> queue;
+  private final List<Thread> writers = new ArrayList<>();
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong committed = new AtomicLong();
+  private volatile boolean running = true;
+  private volatile Throwable failure;
+
+  public JdbcEventSink(DataSource dataSource, JdbcSinkProps props) {
+    this.dataSource = dataSource;
+    this.props = props;
+    this.queue = new ArrayBlockingQueue<>(props.queueCapacity());
+    for (int i = 0; i < props.writers(); i++) {
+      Thread t = new Thread(this::writeLoop, "jdbc-sink-" + i);
+      t.setDaemon(true);
+      t.start();
+      writers.add(t);
+    }
+  }
+
+  /** Met le lot en file (bloque si la file est pleine). Utilisable comme bean Camel : le body n'est pas modifié. */
+  public void write(List<RemittanceEvent> events) throws InterruptedException {
+    write(events, null);
+  }
+
+  /** Idem ; onCommit (si non null) est appelé par le writer juste après le commit qui contient le lot. */
+  public void write(List<RemittanceEvent> events, Runnable onCommit) throws InterruptedException {
+    check();
+    Chunk chunk = new Chunk(events, onCommit);
+    while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) check();
+    submitted.addAndGet(events.size());
+  }
+
+  /** Attend que tout ce qui a été soumis soit commité. */
+  public void flush() throws InterruptedException {
+    while (committed.get() < submitted.get()) {
+      check();
+      Thread.sleep(5);
+    }
+  }
+
+  public long committedEvents() { return committed.get(); }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    if (failure == null) flush();
+    running = false;
+    for (Thread t : writers) t.join();
+  }
+
+  private void check() {
+    if (failure != null) throw new IllegalStateException("JDBC sink failed", failure);
+  }
+
+  private void writeLoop() {
+    try (Connection con = dataSource.getConnection()) {
+      con.setAutoCommit(false);
+      try (PreparedStatement events = con.prepareStatement(INSERT_EVENT);
+           PreparedStatement batches = con.prepareStatement(INSERT_BATCH)) {
+        int inBatch = 0, finals = 0, uncommitted = 0;
+        List<Runnable> onCommit = new ArrayList<>();
+        long lastCommit = System.nanoTime();
+        long maxDelay = props.commitMaxDelay().toNanos();
+        while (running || !queue.isEmpty()) {
+          Chunk chunk = queue.poll(Math.max(1, props.commitMaxDelay().toMillis() / 2), TimeUnit.MILLISECONDS);
+          if (chunk != null) {
+            for (RemittanceEvent ev : chunk.events()) {
+              bindEvent(events, ev);
+              events.addBatch();
+              if (ev.getEventType() == EventType.FINALIZATION) {
+                bindBatch(batches, ev);
+                batches.addBatch();
+                finals++;
+              }
+              if (++inBatch >= props.batchSize()) {
+                events.executeBatch();
+                inBatch = 0;
+                if (finals > 0) { batches.executeBatch(); finals = 0; }
+              }
+            }
+            uncommitted += chunk.events().size();
+            if (chunk.onCommit() != null) onCommit.add(chunk.onCommit());
+          }
+          if (uncommitted > 0 && (uncommitted >= props.commitEvery() || System.nanoTime() - lastCommit >= maxDelay)) {
+            if (inBatch > 0) { events.executeBatch(); inBatch = 0; }
+            if (finals > 0) { batches.executeBatch(); finals = 0; }
+            con.commit();
+            committed.addAndGet(uncommitted);
+            uncommitted = 0;
+            lastCommit = System.nanoTime();
+            for (Runnable r : onCommit) afterCommit(r);
+            onCommit.clear();
+          }
+        }
+      } catch (SQLException | RuntimeException e) {
+        con.rollback();
+        throw e;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable t) {
+      // les lots déjà en file restent aux autres writers ; write()/flush() échouent désormais (check)
+      failure = t;
+      log.error("JDBC sink writer stopped", t);
+    }
+  }
+
+  // un rappel en échec ne doit pas arrêter le writer : le lot est commité, au pire repris et fusionné
+  private static void afterCommit(Runnable r) {
+    try {
+      r.run();
+    } catch (RuntimeException e) {
+      log.warn("JDBC sink commit callback failed: {}", e.toString());
+    }
+  }
+
+  private static void bindEvent(PreparedStatement ps, RemittanceEvent ev) throws SQLException {
+    ps.setString(1, ev.getEventId());
+    ps.setString(2, ev.getEventId());
+    ps.setString(3, ev.getBatchId());
+    ps.setString(4, ev.getEventType().name());
+    ps.setTimestamp(5, new Timestamp(ev.getCreatedAt()));
+    ps.setString(6, ev.getCurrency());
+    if (ev.getDirection() == null) ps.setNull(7, Types.VARCHAR); else ps.setString(7, ev.getDirection().name());
+    ps.setBigDecimal(8, AvroDecimals.fromBytes(ev.getAmount()));
+  }
+
+  private static void bindBatch(PreparedStatement ps, RemittanceEvent fin) throws SQLException {
+    ps.setString(1, fin.getBatchId());
+    ps.setString(2, fin.getBatchId());
+    ps.setString(3, fin.getCurrency());
+    ps.setObject(4, fin.getCreditCount(), Types.INTEGER);
+    ps.setObject(5, fin.getDebitCount(), Types.INTEGER);
+    ps.setBigDecimal(6, AvroDecimals.fromBytes(fin.getCreditAmount()));
+    ps.setBigDecimal(7, AvroDecimals.fromBytes(fin.getDebitAmount()));
+    ps.setBigDecimal(8, AvroDecimals.fromBytes(fin.getTotalAmount()));
+    ps.setObject(9, fin.getTransactionCount(), Types.INTEGER);
+    ps.setTimestamp(10, new Timestamp(fin.getCreatedAt()));
+  }
+}
+
+
+package com.example.remit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "sim.publish")
+public record PublishProps(boolean enabled, Integer queueCapacity, Path spillDir, DataSize segmentSize,
+                           Duration retryBackoff) {
+  public PublishProps {
+    if (queueCapacity == null) queueCapacity = 64;
+    if (spillDir == null) spillDir = Path.of(System.getProperty("java.io.tmpdir"), "remit-spill");
+    if (segmentSize == null) segmentSize = DataSize.ofMegabytes(64);
+    if (retryBackoff == null) retryBackoff = Duration.ofSeconds(1);
+  }
+}
+
+
+
+package com.example.remit.publish;
+
+import com.example.remit.avro.RemittanceEvent;
+import com.example.remit.config.PublishProps;
+import com.example.remit.core.BatchJournal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.camel.ProducerTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Étage de publication entre la génération et Kafka : offer() ne bloque jamais le timer de simulation.
+ * Les lots vont dans une file mémoire bornée (queueCapacity lots) ; quand elle est pleine, ils sont ajoutés
+ * à des segments append-only sur disque (spillDir, segmentSize par fichier), et tant qu'il reste des lots
+ * sur disque les suivants y vont aussi. Un seul thread draine (mémoire, puis disque, puis à nouveau
+ * mémoire) vers ENDPOINT : les lots, donc les événements d'un même batchId, partent dans l'ordre de
+ * génération. Un lot dont l'envoi échoue est réessayé après retryBackoff, sans passer au suivant.
+ *
+ * À l'arrêt, le lot en cours, la file mémoire et la fin du segment entamé sont réécrits dans un segment
+ * placé avant les autres ; au démarrage, les segments présents sont publiés avant tout nouveau lot (une
+ * fin de segment tronquée par un arrêt brutal est ignorée). Un lot interrompu en plein envoi ou réessayé
+ * après un échec est renvoyé en entier : la route saute l'envoi des eventId déjà publiés (eventIdRepo,
+ * dont les eventId en échec sont retirés), seuls les événements manquants partent.
+ * Métriques (si un MeterRegistry est présent) : remit.publish.queue.depth, remit.publish.spill.pending,
+ * remit.publish.spill.bytes, remit.publish.spilled.batches, remit.publish.published.batches.
+ */
+@Component
+@ConditionalOnProperty(prefix = "sim.publish", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(PublishProps.class)
+public class SpillingPublishBuffer implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(SpillingPublishBuffer.class);
+
+  public static final String ENDPOINT = "direct:remit-publish";
+  private static final String PREFIX = "segment-";
+  private static final String SUFFIX = ".spill";
+
+  private static final class Segment {
+    final Path path;
+    final long number;
+    long batches, read, bytes;
+    Segment(Path path, long number) { this.path = path; this.number = number; }
+  }
+
+  private final PublishProps props;
+  private final ProducerTemplate template;
+  private final Object lock = new Object();
+  private final ArrayDeque<List<RemittanceEvent>> memory = new ArrayDeque<>();
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // du plus ancien (lu) au plus récent (écrit)
+  private long spillPending;            // lots sur disque pas encore relus
+  private long spillBytes;              // taille des segments présents
+  private long nextSegment;
+  private DataOutputStream out;         // ouvert sur le dernier segment, null si aucun segment en écriture
+  private DataInputStream in;           // ouvert sur le premier segment, null si pas encore lu
+  private List<RemittanceEvent> current; // lot en cours d'envoi (thread de drain)
+  private final AtomicLong spilled = new AtomicLong();
+  private final AtomicLong published = new AtomicLong();
+  private final Thread drainer;
+  private volatile boolean running = true;
+
+  public SpillingPublishBuffer(PublishProps props, ProducerTemplate template, ObjectProvider<MeterRegistry> meters)
+      throws IOException {
+    this.props = props;
+    this.template = template;
+    Files.createDirectories(props.spillDir());
+    recover();
+    MeterRegistry registry = meters.getIfAvailable();
+    if (registry != null) bind(registry);
+    this.drainer = new Thread(this::drainLoop, "remit-publish");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  /** Dépose le lot sans attendre le broker : en mémoire, ou sur disque si la file est pleine. Utilisable comme bean Camel. */
+  public void offer(List<RemittanceEvent> batch) throws IOException {
+    synchronized (lock) {
+      if (!running) throw new IllegalStateException("Publish buffer stopped");
+      if (spillPending == 0 && memory.size() < props.queueCapacity()) memory.addLast(batch);
+      else spill(batch);
+      lock.notifyAll();
+    }
+  }
+
+  public int queueDepth() { synchronized (lock) { return memory.size(); } }
+  public long spilledPending() { synchronized (lock) { return spillPending; } }
+  public long spillBytes() { synchronized (lock) { return spillBytes; } }
+  public long spilledBatches() { return spilled.get(); }
+  public long publishedBatches() { return published.get(); }
+
+  @Override
+  public void destroy() throws InterruptedException, IOException {
+    synchronized (lock) {
+      running = false;
+      lock.notifyAll();
+    }
+    drainer.interrupt();                 // coupe l'attente entre deux essais ; un envoi en cours se termine
+    drainer.join();
+    synchronized (lock) {
+      // ordre de publication : lot en cours, file mémoire, fin du segment entamé, puis les segments suivants
+      List<List<RemittanceEvent>> rest = new ArrayList<>();
+      if (current != null) rest.add(current);
+      rest.addAll(memory);
+      memory.clear();
+      if (in != null) {
+        Segment first = segments.peekFirst();
+        while (segments.peekFirst() == first) rest.add(readSpilled());
+      }
+      if (out != null) out.close();
+      if (!rest.isEmpty()) {
+        long number = segments.isEmpty() ? nextSegment : segments.peekFirst().number - 1;
+        try (DataOutputStream head = open(segmentPath(number))) {
+          for (List<RemittanceEvent> batch : rest) writeFrame(head, BatchJournal.encode(batch));
+        }
+        log.info("Publication arrêtée : {} lots conservés dans {}", rest.size() + spillPending, props.spillDir());
+      }
+    }
+  }
+
+  private void drainLoop() {
+    while (true) {
+      List<RemittanceEvent> batch;
+      synchronized (lock) {
+        try {
+          while (running && memory.isEmpty() && spillPending == 0) lock.wait();
+          if (!running) return;
+          // la file mémoire est toujours plus ancienne que le disque : on la vide d'abord
+          batch = memory.isEmpty() ? readSpilled() : memory.pollFirst();
+        } catch (InterruptedException e) {
+          return;
+        } catch (IOException e) {
+          log.error("Lecture du débordement impossible ({}) : publication arrêtée", props.spillDir(), e);
+          running = false;
+          return;
+        }
+        current = batch;
+      }
+      if (publish(batch)) {
+        synchronized (lock) { current = null; }
+      } else {
+        return;                          // arrêt : `current` sera réécrit sur disque par destroy()
+      }
+    }
+  }
+
+  private boolean publish(List<RemittanceEvent> batch) {
+    while (true) {
+      try {
+        template.sendBody(ENDPOINT, batch);
+        published.incrementAndGet();
+        return true;
+      } catch (RuntimeException e) {
+        if (!running) return false;
+        log.warn("Publication du lot {} en échec, nouvel essai dans {} : {}",
+            batch.isEmpty() ? "?" : batch.get(0).getBatchId(), props.retryBackoff(), e.toString());
+        try {
+          Thread.sleep(props.retryBackoff().toMillis());
+        } catch (InterruptedException ie) {
+          return false;
+        }
+      }
+    }
+  }
+
+  // ---- segments (appelé sous lock) ----
+
+  private void spill(List<RemittanceEvent> batch) throws IOException {
+    Segment seg = segments.peekLast();
+    if (out == null || seg.bytes >= props.segmentSize().toBytes()) {
+      if (out != null) out.close();
+      seg = new Segment(segmentPath(nextSegment), nextSegment++);
+      out = open(seg.path);
+      segments.addLast(seg);
+    }
+    int size = writeFrame(out, BatchJournal.encode(batch));
+    out.flush();                         // lisible par le drain, et conservé si le processus s'arrête
+    seg.batches++;
+    seg.bytes += size;
+    spillPending++;
+    spillBytes += size;
+    spilled.incrementAndGet();
+  }
+
+  private List<RemittanceEvent> readSpilled() throws IOException {
+    Segment seg = segments.peekFirst();
+    if (in == null) in = new DataInputStream(new BufferedInputStream(Files.newInputStream(seg.path), 64 * 1024));
+    byte[] frame = new byte[in.readInt()];
+    in.readFully(frame);
+    seg.read++;
+    spillPending--;
+    if (seg.read == seg.batches) {       // segment relu en entier : supprimé
+      in.close();
+      in = null;
+      if (seg == segments.peekLast() && out != null) {
+        out.close();
+        out = null;
+      }
+      segments.removeFirst();
+      spillBytes -= seg.bytes;
+      Files.deleteIfExists(seg.path);
+    }
+    return BatchJournal.decode(frame);
+  }
+
+  /** Segments laissés par une exécution précédente : comptés, fin tronquée coupée, publiés en premier. */
+  private void recover() throws IOException {
+    List<Segment> found;
+    try (Stream<Path> list = Files.list(props.spillDir())) {
+      // tri par numéro : destroy() peut placer un segment avant le premier (numéro négatif)
+      found = list.map(Path::getFileName).map(Path::toString)
+          .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+          .map(name -> new Segment(props.spillDir().resolve(name),
+              Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()))))
+          .sorted(Comparator.comparingLong(seg -> seg.number))
+          .toList();
+    }
+    for (Segment seg : found) {
+      Path p = seg.path;
+      nextSegment = Math.max(nextSegment, seg.number + 1);
+      long size = Files.size(p);
+      try (DataInputStream r = new DataInputStream(new BufferedInputStream(Files.newInputStream(p), 64 * 1024))) {
+        while (seg.bytes + 4 <= size) {
+          int len = r.readInt();
+          if (len < 0 || seg.bytes + 4 + len > size) break;
+          r.skipNBytes(len);
+          seg.bytes += 4 + len;
+          seg.batches++;
+        }
+      }
+      if (seg.bytes < size) {
+        log.warn("Segment {} tronqué à {} octets (fin incomplète)", p, seg.bytes);
+        try (FileChannel ch = FileChannel.open(p, WRITE)) { ch.truncate(seg.bytes); }
+      }
+      if (seg.batches == 0) {
+        Files.delete(p);
+        continue;
+      }
+      segments.addLast(seg);
+      spillPending += seg.batches;
+      spillBytes += seg.bytes;
+    }
+    if (spillPending > 0) log.info("{} lots en attente dans {} : publiés avant les nouveaux", spillPending, props.spillDir());
+  }
+
+  private Path segmentPath(long number) {
+    return props.spillDir().resolve(PREFIX + String.format("%016d", number) + SUFFIX);
+  }
+
+  private static DataOutputStream open(Path path) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, CREATE_NEW, WRITE), 64 * 1024));
+  }
+
+  /** [longueur][trame] ; renvoie les octets écrits. */
+  private static int writeFrame(DataOutputStream o, byte[] frame) throws IOException {
+    o.writeInt(frame.length);
+    o.write(frame);
+    return 4 + frame.length;
+  }
+
+  private void bind(MeterRegistry registry) {
+    Gauge.builder("remit.publish.queue.depth", this, SpillingPublishBuffer::queueDepth)
+        .description("Lots en file mémoire").register(registry);
+    Gauge.builder("remit.publish.spill.pending", this, SpillingPublishBuffer::spilledPending)
+        .description("Lots sur disque en attente de publication").register(registry);
+    Gauge.builder("remit.publish.spill.bytes", this, SpillingPublishBuffer::spillBytes)
+        .baseUnit("bytes").description("Taille des segments de débordement").register(registry);
+    FunctionCounter.builder("remit.publish.spilled.batches", spilled, AtomicLong::get)
+        .description("Lots débordés sur disque").register(registry);
+    FunctionCounter.builder("remit.publish.published.batches", published, AtomicLong::get)
+        .description("Lots publiés").register(registry);
+  }
+}
+
+
 package com.example.remit.route;
 
 import com.example.remit.config.KafkaProps;
 import com.example.remit.config.SimProperties;
 import com.example.remit.avro.RemittanceEvent;
+import com.example.remit.core.BatchJournal;
+import com.example.remit.publish.SpillingPublishBuffer;
+import com.example.remit.sink.JdbcEventSink;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.model.RouteDefinition;
 import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.support.processor.idempotent.FileIdempotentRepository;
 import org.apache.camel.support.processor.idempotent.MemoryIdempotentRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
+@ConditionalOnProperty(prefix = "sim", name = "route", havingValue = "one-topic", matchIfMissing = true)
 public class RemittanceRoute extends RouteBuilder {
+  private static final String SEND = "direct:remit-send";
 
   private final SimProperties sim;
   private final KafkaProps kafka;
+  private final JdbcEventSink jdbc; // null si sim.jdbc.enabled=false
+  private final SpillingPublishBuffer publish; // null si sim.publish.enabled=false
+  private final BatchJournal journal;
 
-  public RemittanceRoute(SimProperties sim, KafkaProps kafka) {
-    this.sim = sim; this.kafka = kafka;
+  public RemittanceRoute(SimProperties sim, KafkaProps kafka, ObjectProvider<JdbcEventSink> jdbc,
+                         ObjectProvider<SpillingPublishBuffer> publish, BatchJournal journal) {
+    this.sim = sim; this.kafka = kafka; this.jdbc = jdbc.getIfAvailable(); this.publish = publish.getIfAvailable();
+    this.journal = journal;
   }
 
-  // Idempotence en mémoire (swap possible vers JDBC/Redis pour persister)
+  // Idempotence en mémoire, ou persistée dans sim.checkpoint-dir pour survivre à un redémarrage
   @Bean
   public IdempotentRepository<String> eventIdRepo() {
-    return MemoryIdempotentRepository.memoryIdempotentRepository(1_000_000);
+    if (sim.getCheckpointDir() == null) return MemoryIdempotentRepository.memoryIdempotentRepository(1_000_000);
+    return FileIdempotentRepository.fileIdempotentRepository(
+        sim.getCheckpointDir().resolve("event-ids.dat").toFile(), 1_000_000, 256L * 1024 * 1024);
   }
 
   @Override public void configure() {
@@ -272,32 +1235,503 @@ public class RemittanceRoute extends RouteBuilder {
 
     onException(Exception.class).logHandled(true).log("Simulation error: ${exception.message}");
 
-    fromF("timer:simulate-remit?fixedRate=true&period=%d", sim.getPeriod().toMillis())
+    RouteDefinition route = fromF("timer:simulate-remit?fixedRate=true&period=%d", sim.getPeriod().toMillis())
       .routeId("simulate-remittance-avro-one-topic")
-      .bean("remittanceSimulatorService", "simulateOneBatch")   // -> List<RemittanceEvent>
+      .bean("remittanceSimulatorService", "simulateOneBatch");  // -> List<RemittanceEvent>
+    // lot journalisé avant tout envoi (sim.checkpoint-dir) : interrompu, il est repris au redémarrage
+    if (journal.enabled()) route.bean(journal, "write");
+    // copie en base du lot entier (écriture asynchrone par lots JDBC), avant le découpage vers Kafka
+    if (jdbc != null) route.process(ex -> persist(ex.getIn().getBody(List.class)));
+    // avec le buffer, le timer ne fait que déposer le lot : son rythme ne dépend plus du broker
+    if (publish != null) route.bean(publish, "offer");
+    else route.to(SEND);
+
+    if (journal.enabled()) {
+      var replay = from("timer:recover-remit?repeatCount=1")
+        .routeId("recover-remittance-avro")
+        .process(ex -> ex.getIn().setBody(journal.recover()))
+        .split(body());
+      // la base reçoit aussi le lot repris : il a pu être journalisé avant son commit JDBC
+      if (jdbc != null) replay.process(ex -> persist(ex.getIn().getBody(List.class)));
+      if (publish != null) replay.bean(publish, "offer");
+      else replay.to(SEND);
+      replay.end();
+    }
+
+    RouteDefinition send = publish != null
+        ? from(SpillingPublishBuffer.ENDPOINT).routeId("publish-remittance-avro")
+        : from(SEND).routeId("send-remittance-avro");
+    send
       .split(body())
         // KEY = batchId (garantit l'ordre par remise), header pour Kafka
         .setHeader(KafkaConstants.KEY, simple("${body.batchId}"))
-        // Idempotence producteur: filtre si eventId déjà vu (optionnel mais utile en plus d'idempotence Kafka)
+        // Idempotence producteur: eventId déjà publié -> ni envoi ni log (le bloc s'arrête au .end()) ;
+        // un envoi en échec retire l'eventId, le lot réessayé renverra donc exactement les événements manquants
         .idempotentConsumer(simple("${body.eventId}")).messageIdRepository("eventIdRepo")
-          .skipDuplicate(true).removeOnFailure(false)
+          .skipDuplicate(true).removeOnFailure(true)
+          // Envoi Avro: on passe un SpecificRecord -> serializer Confluent fait le reste
+          .toD("kafka:" + kafka.getTopic()
+              + "?brokers=" + kafka.getBootstrap()
+              + "&keySerializer=org.apache.kafka.common.serialization.StringSerializer"
+              + "&valueSerializer=io.confluent.kafka.serializers.KafkaAvroSerializer"
+              + "&additionalProperties[enable.idempotence]=true"
+              + "&additionalProperties[acks]=all"
+              + "&additionalProperties[max.in.flight.requests.per.connection]=1"
+              + "&additionalProperties[retries]=2147483647"
+              + "&additionalProperties[schema.registry.url]=" + kafka.getSchemaRegistryUrl()
+          )
+          .log("Published ${header.kafka.KEY} ${body.eventType} to topic " + kafka.getTopic())
         .end()
-        // Envoi Avro: on passe un SpecificRecord -> serializer Confluent fait le reste
-        .toD("kafka:" + kafka.getTopic()
-            + "?brokers=" + kafka.getBootstrap()
-            + "&keySerializer=org.apache.kafka.common.serialization.StringSerializer"
-            + "&valueSerializer=io.confluent.kafka.serializers.KafkaAvroSerializer"
-            + "&additionalProperties[enable.idempotence]=true"
-            + "&additionalProperties[acks]=all"
-            + "&additionalProperties[max.in.flight.requests.per.connection]=1"
-            + "&additionalProperties[retries]=2147483647"
-            + "&additionalProperties[schema.registry.url]=" + kafka.getSchemaRegistryUrl()
-        )
-        .log("Published ${header.kafka.KEY} ${body.eventType} to topic " + kafka.getTopic())
       .end();
+    // lot entièrement publié (le split renvoie la liste d'origine) : retiré du journal
+    if (journal.enabled()) send.bean(journal, "close");
+  }
+
+  // le journal attend aussi le commit en base du lot avant de le supprimer
+  private void persist(List<RemittanceEvent> batch) throws InterruptedException {
+    journal.hold(batch);
+    jdbc.write(batch, () -> journal.close(batch));
   }
 }
 
 
 
 
+package com.example.bench.remit;
+
+import com.acme.bench.LatencyRecorder;
+import org.apache.camel.component.kafka.KafkaClientFactory;
+import org.apache.camel.component.kafka.KafkaConfiguration;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+/**
+ * KafkaClientFactory du banc : à la place d'un KafkaProducer, un MockProducer en mémoire qui acquitte
+ * immédiatement mais sérialise avec les mêmes sérialiseurs que la prod (KafkaAvroSerializer compris ;
+ * avec schema.registry.url=mock://… le registry est lui aussi en mémoire). Un consommateur kafka:
+ * éventuel reçoit un MockConsumer vide.
+ */
+public class BenchKafkaClientFactory implements KafkaClientFactory {
+
+  private final LatencyRecorder recorder;
+
+  public BenchKafkaClientFactory(LatencyRecorder recorder) { this.recorder = recorder; }
+
+  @Override public Producer getProducer(Properties props) {
+    return new RecordingProducer(serializer(props, ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, true),
+        serializer(props, ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, false), recorder);
+  }
+
+  @Override public Consumer getConsumer(Properties props) {
+    return new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+  }
+
+  @Override public String getBrokers(KafkaConfiguration configuration) { return configuration.getBrokers(); }
+
+  @SuppressWarnings("unchecked")
+  private static Serializer<Object> serializer(Properties props, String key, boolean isKey) {
+    Object type = props.get(key);
+    try {
+      Class<?> cls = type instanceof Class<?> c ? c : Class.forName(type.toString());
+      Serializer<Object> serializer = (Serializer<Object>) cls.getDeclaredConstructor().newInstance();
+      Map<String, Object> config = new HashMap<>();
+      props.forEach((k, v) -> config.put(k.toString(), v));
+      serializer.configure(config, isKey);
+      return serializer;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create " + key + " " + type, e);
+    }
+  }
+
+  /** Mesure chaque send() (sérialisation comprise) et oublie régulièrement l'historique du MockProducer. */
+  static final class RecordingProducer extends MockProducer<Object, Object> {
+    private final LatencyRecorder recorder;
+    private int sinceClear;
+
+    RecordingProducer(Serializer<Object> keys, Serializer<Object> values, LatencyRecorder recorder) {
+      super(true, keys, values);
+      this.recorder = recorder;
+    }
+
+    @Override public synchronized Future<RecordMetadata> send(ProducerRecord<Object, Object> record, Callback callback) {
+      long t0 = System.nanoTime();
+      Future<RecordMetadata> sent = super.send(record, callback);
+      recorder.record(System.nanoTime() - t0);
+      if (++sinceClear == 10_000) { clear(); sinceClear = 0; }
+      return sent;
+    }
+  }
+}
+
+package com.example.bench.remit;
+
+import com.acme.bench.BenchResult;
+import com.acme.bench.JvmProbe;
+import com.acme.bench.LatencyRecorder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Banc de bout en bout des routes de remise, sans broker ni registry : le composant Kafka reçoit
+ * BenchKafkaClientFactory (MockProducer) et le registry est mock://. Chaque charge démarre son propre
+ * contexte, attend `warmup` envois puis mesure `events` envois : débit, latence de send() p50/p99/p999,
+ * taux d'allocation et temps de GC.
+ *
+ *   mvn test-compile exec:java -Dexec.classpathScope=test -Dbench.label=$(git rev-parse --short HEAD) \
+ *       -Dexec.mainClass=com.example.bench.remit.RemittanceBenchmark \
+ *       -Dexec.args="route=one-topic,tx=50,period=1ms route=processors,tx=500,period=5ms"
+ *
+ * Clés d'une charge : route (one-topic | processors), tx (transactions par lot), period (cadence du timer),
+ * publish (buffer de publication sim.publish), checkpoint (sim.checkpoint-dir : mesure aussi le fsync de
+ * l'horloge et du journal par lot et l'idempotence sur fichier ; sinon tout est en mémoire), events, warmup.
+ * Sans argument : DEFAULT_WORKLOADS. L'état (spill, checkpoint) va dans un répertoire temporaire supprimé
+ * après chaque charge. Résultats ajoutés en JSON lines à bench.out (défaut target/bench/remittance.jsonl).
+ * Source de test, hors de com.example.remit : ni empaquetée ni vue par le scan de l'application.
+ */
+@SpringBootApplication(scanBasePackages = "com.example.remit")
+@ConfigurationPropertiesScan("com.example.remit.config")
+public class RemittanceBenchmark {
+
+  static final List<String> DEFAULT_WORKLOADS = List.of(
+      "route=one-topic,tx=50,period=1ms",
+      "route=one-topic,tx=500,period=5ms",
+      "route=one-topic,tx=50,period=1ms,publish=true",
+      "route=one-topic,tx=50,period=1ms,checkpoint=true",
+      "route=processors,tx=50,period=1ms");
+  static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+  record Workload(String route, int tx, Duration period, boolean publish, boolean checkpoint, long events,
+                  long warmup) {
+    static Workload parse(String spec) {
+      Map<String, String> kv = BenchResult.spec(spec);
+      return new Workload(kv.getOrDefault("route", "one-topic"),
+          Integer.parseInt(kv.getOrDefault("tx", "50")),
+          DurationStyle.detectAndParse(kv.getOrDefault("period", "1ms")),
+          Boolean.parseBoolean(kv.getOrDefault("publish", "false")),
+          Boolean.parseBoolean(kv.getOrDefault("checkpoint", "false")),
+          Long.parseLong(kv.getOrDefault("events", "200000")),
+          Long.parseLong(kv.getOrDefault("warmup", "50000")));
+    }
+
+    String name() {
+      return route + "/tx=" + tx + "/period=" + period.toMillis() + "ms" + (publish ? "/publish" : "")
+          + (checkpoint ? "/checkpoint" : "");
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<Workload> workloads = (args.length == 0 ? DEFAULT_WORKLOADS : List.of(args)).stream()
+        .map(Workload::parse).toList();
+    String label = System.getProperty("bench.label", "dev");
+    Path out = Path.of(System.getProperty("bench.out", "target/bench/remittance.jsonl")).toAbsolutePath();
+    Files.createDirectories(out.getParent());
+    ObjectMapper json = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    for (Workload w : workloads) {
+      BenchResult result = run(w, label);
+      Files.writeString(out, json.writeValueAsString(result) + "\n",
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      System.out.println(result.summary());
+    }
+  }
+
+  static BenchResult run(Workload w, String label) throws Exception {
+    LatencyRecorder recorder = new LatencyRecorder(w.events());
+    BenchKafkaClientFactory kafka = new BenchKafkaClientFactory(recorder);
+    // état (spill, checkpoint) dans un répertoire jetable : le banc ne touche pas à celui de la prod
+    Path state = Files.createTempDirectory("remit-bench");
+    try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(RemittanceBenchmark.class)
+        .web(WebApplicationType.NONE)
+        .initializers(c -> c.getBeanFactory().registerSingleton("benchKafkaClientFactory", kafka))
+        // arguments de ligne de commande : priorité sur application.yml ; checkpoint-dir vide = pas de reprise
+        .run("--sim.route=" + w.route(),
+            "--sim.transactions-per-batch=" + w.tx(),
+            "--sim.period=" + w.period().toMillis() + "ms",
+            "--sim.clock.mode=REAL",
+            "--sim.checkpoint-dir=" + (w.checkpoint() ? state.resolve("checkpoint").toString() : ""),
+            "--sim.jdbc.enabled=false",
+            "--sim.publish.enabled=" + w.publish(),
+            "--sim.publish.spill-dir=" + state.resolve("spill"),
+            "--kafka.schema-registry-url=mock://remit-bench",
+            "--camel.component.kafka.kafka-client-factory=#benchKafkaClientFactory",
+            "--camel.springboot.main-run-controller=false",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN")) {
+
+      if (!recorder.await(w.warmup(), TIMEOUT)) throw new IllegalStateException("warm-up timed out: " + w.name());
+      recorder.reset();
+      JvmProbe start = JvmProbe.now();
+      if (!recorder.await(w.events(), TIMEOUT)) throw new IllegalStateException("run timed out: " + w.name());
+      long events = recorder.events();
+      JvmProbe end = JvmProbe.now();
+      return BenchResult.of("remittance", w.name(), label, events, start, end, recorder.sorted());
+    } finally {
+      delete(state);
+    }
+  }
+
+  private static void delete(Path dir) throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+    }
+  }
+}
+
+
+package com.example.remit.publish;
+
+import com.example.remit.avro.EventType;
+import com.example.remit.avro.RemittanceEvent;
+import com.example.remit.config.PublishProps;
+import com.example.remit.core.BatchJournal;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.camel.ProducerTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Ordre de publication, segments sur disque et reprise, sans Camel : le ProducerTemplate est simulé. */
+class SpillingPublishBufferTest {
+
+  @TempDir
+  Path dir;
+
+  private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+
+  @Test
+  void memoryIsDrainedBeforeDiskAndNewBatchesQueueBehindIt() throws Exception {
+    CountDownLatch gate = new CountDownLatch(1);
+    SpillingPublishBuffer buffer = buffer(2, 1, batch -> {
+      await(gate);
+      record(batch);
+    });
+    try {
+      for (int i = 1; i <= 8; i++) buffer.offer(batch(i));
+      // au plus 1 lot en cours et 2 en mémoire ; segment de 1 octet : un fichier par lot débordé
+      assertTrue(buffer.spilledPending() >= 5);
+      assertEquals(buffer.spilledPending(), segments().size());
+      gate.countDown();
+      awaitUntil(() -> published.size() == 8);
+      assertEquals(ids(1, 8), published);
+      assertEquals(List.of(), segments());
+      assertEquals(0, buffer.spillBytes());
+
+      long spilled = buffer.spilledBatches();
+      buffer.offer(batch(9));                // disque vidé : retour en mémoire
+      awaitUntil(() -> published.size() == 9);
+      assertEquals(spilled, buffer.spilledBatches());
+    } finally {
+      buffer.destroy();
+    }
+  }
+
+  @Test
+  void segmentsRotateAndAreDeletedWhileTheDrainerReads() throws Exception {
+    // 3 trames par segment : le drain lit aussi le segment encore ouvert en écriture
+    SpillingPublishBuffer buffer = buffer(1, 3 * frameSize() - 1, batch -> {
+      if (published.size() % 7 == 0) sleep(1);
+      record(batch);
+    });
+    try {
+      for (int i = 1; i <= 300; i++) buffer.offer(batch(i));
+      awaitUntil(() -> published.size() == 300);
+      assertEquals(ids(1, 300), published);
+      assertTrue(buffer.spilledBatches() > 0);
+      assertEquals(0, buffer.spilledPending());
+      assertEquals(List.of(), segments());
+    } finally {
+      buffer.destroy();
+    }
+  }
+
+  @Test
+  void truncatedTailIsCutOnRecovery() throws Exception {
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(dir.resolve("segment-0000000000000000.spill")))) {
+      writeFrame(out, BatchJournal.encode(batch(1)));
+      writeFrame(out, BatchJournal.encode(batch(2)));
+      byte[] third = BatchJournal.encode(batch(3));
+      out.writeInt(third.length);            // arrêt brutal au milieu de la trame
+      out.write(third, 0, third.length / 2);
+    }
+    Files.write(dir.resolve("segment-0000000000000001.spill"), new byte[] {0, 0});   // longueur incomplète
+
+    SpillingPublishBuffer buffer = buffer(4, 1024, this::record);
+    try {
+      awaitUntil(() -> published.size() == 2);
+      buffer.offer(batch(4));
+      awaitUntil(() -> published.size() == 3);
+      assertEquals(List.of("B0001", "B0002", "B0004"), published);
+      assertEquals(List.of(), segments());
+    } finally {
+      buffer.destroy();
+    }
+  }
+
+  @Test
+  void destroyWritesUnsentBatchesAheadOfExistingSegments() throws Exception {
+    // 1er arrêt : lot 1 en échec, lot 2 en mémoire, lots 3 et 4 sur disque (segments 0 et 1)
+    CountDownLatch tried = new CountDownLatch(1);
+    SpillingPublishBuffer first = buffer(1, 1, failing(tried));
+    first.offer(batch(1));
+    await(tried);
+    for (int i = 2; i <= 4; i++) first.offer(batch(i));
+    first.destroy();
+    assertEquals(List.of("segment--000000000000001.spill", "segment-0000000000000000.spill",
+        "segment-0000000000000001.spill"), segments());
+
+    // 2e arrêt : segment -1 entamé par le drain, lot 5 débordé derrière les segments repris
+    CountDownLatch triedAgain = new CountDownLatch(1);
+    SpillingPublishBuffer second = buffer(1, 1, failing(triedAgain));
+    await(triedAgain);
+    second.offer(batch(5));
+    second.destroy();
+    assertTrue(segments().contains("segment--000000000000001.spill"));
+
+    SpillingPublishBuffer third = buffer(1, 1, this::record);
+    try {
+      awaitUntil(() -> published.size() == 5);
+      assertEquals(ids(1, 5), published);
+      assertEquals(List.of(), segments());
+    } finally {
+      third.destroy();
+    }
+  }
+
+  // ---- outils ----
+
+  private SpillingPublishBuffer buffer(int capacity, long segmentBytes, Consumer<List<RemittanceEvent>> send)
+      throws IOException {
+    PublishProps props = new PublishProps(true, capacity, dir, DataSize.ofBytes(segmentBytes), Duration.ofMillis(10));
+    ObjectProvider<MeterRegistry> meters = new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class);
+    return new SpillingPublishBuffer(props, template(send), meters);
+  }
+
+  /** ProducerTemplate réduit à sendBody(endpoint, lot). */
+  @SuppressWarnings("unchecked")
+  private static ProducerTemplate template(Consumer<List<RemittanceEvent>> send) {
+    return (ProducerTemplate) Proxy.newProxyInstance(ProducerTemplate.class.getClassLoader(),
+        new Class<?>[] {ProducerTemplate.class}, (proxy, method, args) -> {
+          if (!method.getName().equals("sendBody") || args.length != 2) throw new UnsupportedOperationException(method.getName());
+          send.accept((List<RemittanceEvent>) args[1]);
+          return null;
+        });
+  }
+
+  private static Consumer<List<RemittanceEvent>> failing(CountDownLatch tried) {
+    return batch -> {
+      tried.countDown();
+      throw new IllegalStateException("broker indisponible");
+    };
+  }
+
+  private void record(List<RemittanceEvent> batch) {
+    published.add(batch.get(0).getBatchId());
+  }
+
+  private static List<RemittanceEvent> batch(int n) {
+    return List.of(RemittanceEvent.newBuilder()
+        .setEventType(EventType.INITIATION)
+        .setBatchId(String.format("B%04d", n))
+        .setEventId(String.format("E%04d", n))
+        .setCreatedAt(0L)
+        .setCurrency("EUR")
+        .build());
+  }
+
+  private static List<String> ids(int from, int to) {
+    return IntStream.rangeClosed(from, to).mapToObj(i -> String.format("B%04d", i)).toList();
+  }
+
+  /** Octets d'un lot de test sur disque : les lots ont tous la même taille. */
+  private static int frameSize() throws IOException {
+    return 4 + BatchJournal.encode(batch(1)).length;
+  }
+
+  private static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+    out.writeInt(frame.length);
+    out.write(frame);
+  }
+
+  private List<String> segments() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.map(p -> p.getFileName().toString()).sorted().toList();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      if (!latch.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("délai dépassé");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void awaitUntil(BooleanSupplier done) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!done.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "délai dépassé");
+      Thread.sleep(5);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -17,13 +17,24 @@ public final class AvroDecimals {
   public static ByteBuffer toBytes(BigDecimal v) {
     return v == null ? null : CONV.toBytes(v, DEC_SCHEMA, DEC_18_2);
   }
+
+  public static BigDecimal fromBytes(ByteBuffer b) {
+    return b == null ? null : CONV.fromBytes(b.duplicate(), DEC_SCHEMA, DEC_18_2); // duplicate : ne consomme pas le buffer de l'événement
+  }
 }
 
 
 
 package com.example.remit.core;
 
+import com.example.remit.avro.Direction;
+import com.example.remit.avro.EventType;
+import com.example.remit.avro.RemittanceEvent;
+import com.example.remit.avroutil.AvroDecimals;
+
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
 
 public final class BatchAcc {
   public String batchId;
@@ -31,6 +42,41 @@ public final class BatchAcc {
   public int creditCount, debitCount;
   public BigDecimal creditAmt = BigDecimal.ZERO;
   public BigDecimal debitAmt = BigDecimal.ZERO;
+
+  /** Accumulateur recalculé à partir des événements déjà générés d'un lot (reprise par BatchJournal). */
+  public static BatchAcc of(List<RemittanceEvent> events) {
+    BatchAcc acc = new BatchAcc();
+    acc.batchId = events.get(0).getBatchId();
+    acc.currency = events.get(0).getCurrency();
+    for (RemittanceEvent ev : events) {
+      if (ev.getEventType() == EventType.TRANSACTION) acc.add(ev.getDirection(), AvroDecimals.fromBytes(ev.getAmount()));
+    }
+    return acc;
+  }
+
+  public void add(Direction dir, BigDecimal amt) {
+    if (dir == Direction.CREDIT) { creditCount++; creditAmt = creditAmt.add(amt); }
+    else { debitCount++; debitAmt = debitAmt.add(amt); }
+  }
+
+  public RemittanceEvent finalEvent(long createdAt) {
+    BigDecimal total = creditAmt.add(debitAmt);
+    return RemittanceEvent.newBuilder()
+      .setEventType(EventType.FINALIZATION)
+      .setBatchId(batchId)
+      .setEventId(UUID.randomUUID().toString())
+      .setCreatedAt(createdAt)
+      .setCurrency(currency)
+      .setDirection(null)
+      .setAmount(null)
+      .setCreditCount(creditCount)
+      .setDebitCount(debitCount)
+      .setCreditAmount(AvroDecimals.toBytes(creditAmt))
+      .setDebitAmount(AvroDecimals.toBytes(debitAmt))
+      .setTotalAmount(AvroDecimals.toBytes(total))
+      .setTransactionCount(creditCount + debitCount)
+      .build();
+  }
 }
 
 
@@ -40,6 +86,7 @@ package com.example.remit.proc;
 import com.example.remit.avro.*;
 import com.example.remit.avroutil.AvroDecimals;
 import com.example.remit.core.BatchAcc;
+import com.example.remit.core.SimulationClock;
 import com.example.remit.config.SimProperties;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
@@ -47,17 +94,17 @@ import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.OffsetDateTime;
 import java.util.*;
 
 @Component
 public class StartBatchProcessor implements Processor {
   private final SimProperties props;
-  public StartBatchProcessor(SimProperties props){ this.props = props; }
+  private final SimulationClock clock;
+  public StartBatchProcessor(SimProperties props, SimulationClock clock){ this.props = props; this.clock = clock; }
 
   @Override public void process(Exchange ex) {
     BatchAcc acc = new BatchAcc();
-    acc.batchId = "REM-" + System.currentTimeMillis();
+    acc.batchId = clock.nextBatchId();
     acc.currency = props.getCurrency();
     ex.setProperty("acc", acc);
   }
@@ -65,13 +112,16 @@ public class StartBatchProcessor implements Processor {
 
 @Component
 class InitEventProcessor implements Processor {
+  private final SimulationClock clock;
+  InitEventProcessor(SimulationClock clock){ this.clock = clock; }
+
   @Override public void process(Exchange ex) {
     BatchAcc acc = ex.getProperty("acc", BatchAcc.class);
     RemittanceEvent ev = RemittanceEvent.newBuilder()
       .setEventType(EventType.INITIATION)
       .setBatchId(acc.batchId)
       .setEventId(UUID.randomUUID().toString())
-      .setCreatedAt(OffsetDateTime.now().toInstant().toEpochMilli())
+      .setCreatedAt(clock.millis())
       .setCurrency(acc.currency)
       .setDirection(null)
       .setAmount(null)
@@ -87,8 +137,9 @@ class InitEventProcessor implements Processor {
 @Component
 class GenerateTxListProcessor implements Processor {
   private final SimProperties props;
+  private final SimulationClock clock;
   private final Random rnd = new Random(42L);
-  public GenerateTxListProcessor(SimProperties props){ this.props = props; }
+  public GenerateTxListProcessor(SimProperties props, SimulationClock clock){ this.props = props; this.clock = clock; }
 
   @Override public void process(Exchange ex) {
     BatchAcc acc = ex.getProperty("acc", BatchAcc.class);
@@ -100,7 +151,7 @@ class GenerateTxListProcessor implements Processor {
         .setEventType(EventType.TRANSACTION)
         .setBatchId(acc.batchId)
         .setEventId(UUID.randomUUID().toString())
-        .setCreatedAt(OffsetDateTime.now().toInstant().toEpochMilli())
+        .setCreatedAt(clock.millis())
         .setCurrency(acc.currency)
         .setDirection(dir)
         .setAmount(AvroDecimals.toBytes(amt))
@@ -109,9 +160,7 @@ class GenerateTxListProcessor implements Processor {
         .setTransactionCount(null)
         .build();
       list.add(tx);
-
-      if (dir == Direction.CREDIT) { acc.creditCount++; acc.creditAmt = acc.creditAmt.add(amt); }
-      else { acc.debitCount++; acc.debitAmt = acc.debitAmt.add(amt); }
+      acc.add(dir, amt);
     }
     ex.getIn().setBody(list);
     ex.getIn().setHeader("kafka.KEY", acc.batchId);
@@ -125,24 +174,12 @@ class GenerateTxListProcessor implements Processor {
 
 @Component
 class FinalEventProcessor implements Processor {
+  private final SimulationClock clock;
+  FinalEventProcessor(SimulationClock clock){ this.clock = clock; }
+
   @Override public void process(Exchange ex) {
     BatchAcc acc = ex.getProperty("acc", BatchAcc.class);
-    BigDecimal total = acc.creditAmt.add(acc.debitAmt);
-    RemittanceEvent fin = RemittanceEvent.newBuilder()
-      .setEventType(EventType.FINALIZATION)
-      .setBatchId(acc.batchId)
-      .setEventId(UUID.randomUUID().toString())
-      .setCreatedAt(OffsetDateTime.now().toInstant().toEpochMilli())
-      .setCurrency(acc.currency)
-      .setDirection(null)
-      .setAmount(null)
-      .setCreditCount(acc.creditCount)
-      .setDebitCount(acc.debitCount)
-      .setCreditAmount(AvroDecimals.toBytes(acc.creditAmt))
-      .setDebitAmount(AvroDecimals.toBytes(acc.debitAmt))
-      .setTotalAmount(AvroDecimals.toBytes(total))
-      .setTransactionCount(acc.creditCount + acc.debitCount)
-      .build();
+    RemittanceEvent fin = acc.finalEvent(clock.millis());
     ex.getIn().setBody(fin);
     ex.getIn().setHeader("kafka.KEY", acc.batchId);
   }
@@ -152,33 +189,54 @@ class FinalEventProcessor implements Processor {
 
 package com.example.remit.route;
 
+import com.example.remit.avro.RemittanceEvent;
 import com.example.remit.config.KafkaProps;
 import com.example.remit.config.SimProperties;
+import com.example.remit.core.BatchJournal;
 import com.example.remit.proc.*;
+import com.example.remit.sink.JdbcEventSink;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.kafka.KafkaConstants;
 import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.support.processor.idempotent.FileIdempotentRepository;
 import org.apache.camel.support.processor.idempotent.MemoryIdempotentRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
+@ConditionalOnProperty(prefix = "sim", name = "route", havingValue = "processors")
 public class RemittanceRouteProcessors extends RouteBuilder {
+  private static final String SEND = "direct:remit-send-processors";
+
   private final SimProperties sim;
   private final KafkaProps kafka;
   private final StartBatchProcessor start;
   private final InitEventProcessor init;
   private final GenerateTxListProcessor genTx;
   private final FinalEventProcessor fin;
+  private final JdbcEventSink jdbc; // null si sim.jdbc.enabled=false
+  private final BatchJournal journal;
 
   public RemittanceRouteProcessors(SimProperties sim, KafkaProps kafka,
                                    StartBatchProcessor start, InitEventProcessor init,
-                                   GenerateTxListProcessor genTx, FinalEventProcessor fin) {
+                                   GenerateTxListProcessor genTx, FinalEventProcessor fin,
+                                   ObjectProvider<JdbcEventSink> jdbc, BatchJournal journal) {
     this.sim = sim; this.kafka = kafka; this.start = start; this.init = init; this.genTx = genTx; this.fin = fin;
+    this.jdbc = jdbc.getIfAvailable();
+    this.journal = journal;
   }
 
   @Bean IdempotentRepository<String> eventIdRepo() {
-    return MemoryIdempotentRepository.memoryIdempotentRepository(1_000_000);
+    if (sim.getCheckpointDir() == null) return MemoryIdempotentRepository.memoryIdempotentRepository(1_000_000);
+    return FileIdempotentRepository.fileIdempotentRepository(
+        sim.getCheckpointDir().resolve("event-ids.dat").toFile(), 1_000_000, 256L * 1024 * 1024);
   }
 
   @Override public void configure() {
@@ -198,30 +256,79 @@ public class RemittanceRouteProcessors extends RouteBuilder {
       + "&additionalProperties[retries]=2147483647"
       + "&additionalProperties[schema.registry.url]=" + kafka.getSchemaRegistryUrl();
 
+    // INIT, TX et FINAL sont collectés : journal du lot avant chaque envoi (sim.checkpoint-dir),
+    // copie en base en un seul lot à FINAL (un seul writer par remise) ; le journal attend aussi son commit
+    boolean track = jdbc != null || journal.enabled();
+    Processor collect = !track ? ex -> { } : ex -> { collect(ex); journal.write(collected(ex)); };
+    Processor persist = jdbc == null ? collect : ex -> { collect.process(ex); persist(collected(ex)); };
+    Processor close = !track ? ex -> { } : ex -> journal.close(collected(ex));
+
     fromF("timer:simulate-remit?fixedRate=true&period=%d", sim.getPeriod().toMillis())
       .routeId("simulate-remittance-avro-processors")
       .process(start)
 
       // INIT
       .process(init)
-      .setHeader(KafkaConstants.KEY, header("kafka.KEY"))
-      .idempotentConsumer(simple("${body.eventId}")).messageIdRepository("eventIdRepo").skipDuplicate(true).end()
-      .to(kafkaUri)
+      .process(collect)
+      .to(SEND)
 
-      // TX* (split + idempotence par eventId)
+      // TX*
       .process(genTx)
-      .split(body())
-        .setHeader(KafkaConstants.KEY, header("kafka.KEY"))
-        .idempotentConsumer(simple("${body.eventId}")).messageIdRepository("eventIdRepo").skipDuplicate(true).end()
-        .to(kafkaUri)
-      .end()
+      .process(collect)
+      .to(SEND)
 
       // FINAL
       .process(fin)
-      .setHeader(KafkaConstants.KEY, header("kafka.KEY"))
-      .idempotentConsumer(simple("${body.eventId}")).messageIdRepository("eventIdRepo").skipDuplicate(true).end()
-      .to(kafkaUri)
+      .process(persist)
+      .to(SEND)
+      .process(close)
     ;
+
+    // Reprise : lots interrompus par un arrêt brutal, complétés d'un FINALIZATION si besoin, renvoyés en entier
+    if (journal.enabled()) {
+      from("timer:recover-remit?repeatCount=1")
+        .routeId("recover-remittance-avro-processors")
+        .process(ex -> ex.getIn().setBody(journal.recover()))
+        .split(body())
+          // la base reçoit aussi le lot repris : il a pu être journalisé avant son commit JDBC
+          .process(ex -> { if (jdbc != null) persist(ex.getIn().getBody(List.class)); })
+          .to(SEND)
+          .bean(journal, "close")
+        .end();
+    }
+
+    // Envoi d'un événement ou d'une liste, idempotence par eventId : déjà publié -> pas d'envoi ; un envoi
+    // en échec retire l'eventId, l'événement repart à la reprise du lot
+    from(SEND)
+      .routeId("send-remittance-avro-processors")
+      .split(body())
+        .setHeader(KafkaConstants.KEY, simple("${body.batchId}"))
+        .idempotentConsumer(simple("${body.eventId}")).messageIdRepository("eventIdRepo")
+          .skipDuplicate(true).removeOnFailure(true)
+          .to(kafkaUri)
+        .end()
+      .end();
+  }
+
+  private void persist(List<RemittanceEvent> batch) throws InterruptedException {
+    journal.hold(batch);
+    jdbc.write(batch, () -> journal.close(batch));
+  }
+
+  private static void collect(Exchange ex) {
+    Object body = ex.getIn().getBody();
+    if (body instanceof List<?> events) {
+      for (Object ev : events) collected(ex).add((RemittanceEvent) ev);
+    } else {
+      collected(ex).add((RemittanceEvent) body);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<RemittanceEvent> collected(Exchange ex) {
+    List<RemittanceEvent> events = ex.getProperty("batchEvents", List.class);
+    if (events == null) ex.setProperty("batchEvents", events = new ArrayList<>());
+    return events;
   }
 }
 
@@ -0,0 +1,143 @@
+package com.acme.bench;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latences d'envoi (ns) d'une mesure ; les percentiles sont calculés à la fin sur les échantillons triés.
+ * record() est sans verrou : chaque appel réserve sa case par getAndIncrement, des centaines de threads
+ * (virtuels compris) enregistrent en parallèle sans se sérialiser ni épingler leur porteur. Le tableau est
+ * dimensionné d'avance ; au-delà, les envois sont comptés mais pas échantillonnés.
+ */
+public final class LatencyRecorder {
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong events = new AtomicLong();
+    private final long[] samples;
+
+    public LatencyRecorder(long expected) {
+        // agrandir le tableau pendant la mesure fausserait le taux d'allocation
+        samples = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, expected + expected / 4))];
+    }
+
+    public void record(long nanos) {
+        int i = next.getAndIncrement();
+        if (i >= 0 && i < samples.length) samples[i] = nanos;
+        events.incrementAndGet();          // après l'écriture : events() ne compte que des cases remplies
+    }
+
+    public long events() { return events.get(); }
+
+    /** Début de la mesure ; un envoi en cours pendant le reset peut être perdu, pas compté deux fois. */
+    public void reset() {
+        events.set(0);
+        next.set(0);
+    }
+
+    /** Échantillons triés ; à appeler une fois les envois mesurés terminés. */
+    public long[] sorted() {
+        int n = (int) Math.min(Math.min(events.get(), next.get()), samples.length);
+        long[] s = Arrays.copyOf(samples, n);
+        Arrays.sort(s);
+        return s;
+    }
+
+    /** Attend `n` envois depuis le dernier reset ; false si le délai expire avant. */
+    public boolean await(long n, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (events.get() < n) {
+            if (System.nanoTime() - deadline > 0) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    /** Percentile p (0..1) en microsecondes, méthode du rang supérieur. */
+    public static double percentileMicros(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1_000d;
+    }
+}
+
+
+package com.acme.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Instantané JVM pris avant et après une mesure : octets alloués depuis le démarrage par tous les threads,
+ * morts ou virtuels compris (getTotalThreadAllocatedBytes, JDK 21+ ; -1 avant, taux d'allocation non
+ * renseigné), et temps / nombre de collections cumulés de tous les GC.
+ */
+public record JvmProbe(long nanos, long allocatedBytes, long gcMillis, long gcCount) {
+
+    public static JvmProbe now() {
+        long gcMillis = 0, gcCount = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, gc.getCollectionTime());
+            gcCount += Math.max(0, gc.getCollectionCount());
+        }
+        return new JvmProbe(System.nanoTime(), threadAllocatedBytes(), gcMillis, gcCount);
+    }
+
+    private static long threadAllocatedBytes() {
+        try {
+            long total = (long) com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes")
+                    .invoke(ManagementFactory.getThreadMXBean());
+            return Math.max(-1, total);
+        } catch (ReflectiveOperationException | ClassCastException | IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
+
+
+package com.acme.bench;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Une ligne du fichier de résultats (JSON lines) : une charge, une version (label), un instant. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BenchResult(String suite, String workload, String label, Instant at, String jvm, int cpus,
+                          long events, double seconds, double eventsPerSec,
+                          double p50Micros, double p99Micros, double p999Micros, double maxMicros,
+                          Double allocMbPerSec, long gcMillis, long gcCount) {
+
+    public static BenchResult of(String suite, String workload, String label, long events,
+                                 JvmProbe start, JvmProbe end, long[] sortedLatencies) {
+        double seconds = (end.nanos() - start.nanos()) / 1e9;
+        Double alloc = start.allocatedBytes() < 0 || end.allocatedBytes() < 0 ? null
+                : (end.allocatedBytes() - start.allocatedBytes()) / 1_048_576d / seconds;
+        return new BenchResult(suite, workload, label, Instant.now(),
+                System.getProperty("java.vm.name") + " " + Runtime.version(), Runtime.getRuntime().availableProcessors(),
+                events, seconds, events / seconds,
+                LatencyRecorder.percentileMicros(sortedLatencies, 0.50),
+                LatencyRecorder.percentileMicros(sortedLatencies, 0.99),
+                LatencyRecorder.percentileMicros(sortedLatencies, 0.999),
+                LatencyRecorder.percentileMicros(sortedLatencies, 1.0),
+                alloc, end.gcMillis() - start.gcMillis(), end.gcCount() - start.gcCount());
+    }
+
+    /** Charge "clé=valeur,clé=valeur" de la ligne de commande ; une clé seule vaut "true". */
+    public static Map<String, String> spec(String spec) {
+        Map<String, String> kv = new HashMap<>();
+        for (String part : spec.split(",")) {
+            String[] e = part.split("=", 2);
+            kv.put(e[0].trim(), e.length > 1 ? e[1].trim() : "true");
+        }
+        return kv;
+    }
+
+    public String summary() {
+        return String.format("%-10s %-48s %10.0f /s  p50 %8.1f us  p99 %8.1f us  p999 %8.1f us  alloc %s MB/s  gc %d ms (%d)",
+                suite, workload, eventsPerSec, p50Micros, p99Micros, p999Micros,
+                allocMbPerSec == null ? "n/a" : String.format("%.0f", allocMbPerSec), gcMillis, gcCount);
+    }
+}
@@ -1,6 +1,7 @@
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import java.io.OutputStream;
 import java.nio.file.*;
 
 public class JsonWriter {
@@ -12,6 +13,14 @@ public class JsonWriter {
     MAPPER.writeValue(targetFile.toFile(), pojo);           // sérialise en JSON
   }
 
+  // variante compressée (paiement.json.gz / .zst), blocs compressés en parallèle
+  public static void writePojo(Object pojo, Path targetFile, BlockCompressedOutputStream.Codec codec) throws Exception {
+    Files.createDirectories(targetFile.getParent());
+    try (OutputStream out = BlockCompressedOutputStream.wrap(Files.newOutputStream(targetFile), codec)) {
+      MAPPER.writeValue(out, pojo);
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     Path out = Paths.get("/var/data/exports/paiement.json"); // HORS classpath
     writePojo(new Paiement("REF-0001", 199.99, "EUR"), out);
@@ -19,76 +28,1244 @@ public class JsonWriter {
 }
 
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import java.io.BufferedWriter;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.List;
 
 public class NdjsonWriter {
   private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter WRITER = MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+  // gzip / zstd : chaque lot est ajouté comme de nouveaux membres/frames, le fichier reste lisible par zcat / zstdcat
+  public static <T> void appendNdjson(List<T> batch, Path file, BlockCompressedOutputStream.Codec codec) throws Exception {
+    Files.createDirectories(file.getParent());
+    writeNdjson(batch, Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), codec);
+  }
 
+  // écrit le lot puis ferme `sink` (ex. AtomicFiles.AtomicOutput : la fermeture vaut commit) ;
+  // en cas d'erreur un AtomicOutput est abandonné avant fermeture : un lot tronqué n'est jamais publié
+  public static <T> void writeNdjson(List<T> batch, OutputStream sink, BlockCompressedOutputStream.Codec codec) throws Exception {
+    OutputStream out = BlockCompressedOutputStream.wrap(sink, codec);
+    try {
+      JsonGenerator g = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+      g.setRootValueSeparator(null);
+      for (T item : batch) {
+        WRITER.writeValue(g, item);
+        g.writeRaw('\n');
+      }
+      g.close();                           // ferme aussi out puis sink : commit seulement ici
+    } catch (Throwable t) {
+      if (sink instanceof AtomicFiles.AtomicOutput atomic) atomic.abort();
+      try {
+        out.close();                       // libère le compresseur ; sur un AtomicOutput abandonné, échoue sans effet
+      } catch (Exception e) {
+        t.addSuppressed(e);
+      }
+      throw t;
+    }
+  }
+
+  // ponctuel : pour un flux continu, utiliser RollingNdjsonWriter (fichier et générateur gardés ouverts)
   public static <T> void appendNdjson(List<T> batch, Path file) throws Exception {
     Files.createDirectories(file.getParent());
     try (BufferedWriter w = Files.newBufferedWriter(file,
             StandardCharsets.UTF_8,
-            StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+         JsonGenerator g = MAPPER.getFactory().createGenerator(w)) {
+      g.setRootValueSeparator(null);     // pas d'espace entre valeurs racines : on gère les fins de ligne
       for (T item : batch) {
-        try (JsonGenerator g = MAPPER.getFactory().createGenerator(w)) {
-          MAPPER.writeValue(g, item); // écrit sur la ligne
+        WRITER.writeValue(g, item);      // un seul générateur pour tout le lot
+        g.writeRaw('\n');
+      }
+    }
+  }
+}
+
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writer NDJSON longue durée : un seul fichier / JsonGenerator ouverts à la fois, alimentés par un
+ * thread dédié qui vide une file bornée partagée par tous les producteurs (append bloque si la file
+ * est pleine → back-pressure). Rotation par taille et/ou âge, fsync configurable.
+ *
+ *   try (var w = new RollingNdjsonWriter(RollingNdjsonWriter.Config.of(dir, "paiements")
+ *            .maxBytes(256L << 20).maxAge(Duration.ofMinutes(5)).fsync(Fsync.PERIODIC, 0, Duration.ofSeconds(1)))) {
+ *     w.append(paiement);
+ *   }
+ */
+public class RollingNdjsonWriter implements AutoCloseable {
+
+  public enum Fsync {
+    NONE,       // l'OS décide (rotation et close font quand même un force)
+    EVERY_N,    // force toutes les N lignes
+    PERIODIC    // group commit : force au plus toutes les `interval`
+  }
+
+  /** maxBytes porte sur le NDJSON non compressé ; avec un codec, chaque fsync ferme le bloc en cours. */
+  public record Config(Path dir, String prefix, long maxBytes, Duration maxAge,
+                       Fsync fsync, int fsyncEvery, Duration fsyncInterval,
+                       int queueCapacity, int bufferSize, BlockCompressedOutputStream.Codec codec) {
+    public static Config of(Path dir, String prefix) {
+      return new Config(dir, prefix, 128L << 20, Duration.ofMinutes(10),
+          Fsync.NONE, 0, Duration.ofSeconds(1), 64 * 1024, 1 << 20, BlockCompressedOutputStream.Codec.NONE);
+    }
+    public Config maxBytes(long v) { return new Config(dir, prefix, v, maxAge, fsync, fsyncEvery, fsyncInterval, queueCapacity, bufferSize, codec); }
+    public Config maxAge(Duration v) { return new Config(dir, prefix, maxBytes, v, fsync, fsyncEvery, fsyncInterval, queueCapacity, bufferSize, codec); }
+    public Config fsync(Fsync p, int every, Duration interval) { return new Config(dir, prefix, maxBytes, maxAge, p, every, interval, queueCapacity, bufferSize, codec); }
+    public Config queueCapacity(int v) { return new Config(dir, prefix, maxBytes, maxAge, fsync, fsyncEvery, fsyncInterval, v, bufferSize, codec); }
+    public Config bufferSize(int v) { return new Config(dir, prefix, maxBytes, maxAge, fsync, fsyncEvery, fsyncInterval, queueCapacity, v, codec); }
+    public Config codec(BlockCompressedOutputStream.Codec v) { return new Config(dir, prefix, maxBytes, maxAge, fsync, fsyncEvery, fsyncInterval, queueCapacity, bufferSize, v); }
+  }
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter WRITER = MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+  private static final Object EOF = new Object();
+  private static final int DRAIN = 4096;
+
+  private final Config cfg;
+  private final BlockingQueue<Object> queue;
+  private final Thread worker;
+  private final List<Path> completed = new ArrayList<>();
+  // append partage le verrou en lecture, close le prend en écriture : aucun élément ne passe derrière EOF
+  private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+  private volatile boolean closed;
+  private volatile Throwable failure;
+
+  // état possédé par le thread d'écriture
+  private FileChannel channel;
+  private Counting counter;
+  private JsonGenerator gen;
+  private Path current;
+  private long openedAt, lastSync;
+  private int sinceSync, seq;
+
+  public RollingNdjsonWriter(Config cfg) throws IOException {
+    this.cfg = cfg;
+    this.queue = new ArrayBlockingQueue<>(cfg.queueCapacity());
+    Files.createDirectories(cfg.dir());
+    this.worker = new Thread(this::run, "ndjson-writer-" + cfg.prefix());
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /** Met l'objet en file ; bloque si la file est pleine. Thread-safe. */
+  public void append(Object item) throws InterruptedException {
+    gate.readLock().lockInterruptibly();
+    try {
+      check();
+      while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) check();   // bloque, mais voit un échec du worker
+    } finally {
+      gate.readLock().unlock();
+    }
+  }
+
+  public void appendAll(List<?> items) throws InterruptedException {
+    for (Object item : items) append(item);
+  }
+
+  /** Fichiers fermés (rotation ou close), dans l'ordre d'écriture. */
+  public synchronized List<Path> completedFiles() {
+    return List.copyOf(completed);
+  }
+
+  @Override
+  public void close() throws IOException, InterruptedException {
+    // attend les append en cours (le worker continue de vider la file) ; les suivants verront `closed`
+    gate.writeLock().lock();
+    try {
+      if (closed) return;
+      closed = true;
+    } finally {
+      gate.writeLock().unlock();
+    }
+    while (worker.isAlive() && !queue.offer(EOF, 100, TimeUnit.MILLISECONDS)) { /* le worker vide la file */ }
+    worker.join();
+    if (failure != null) throw new IOException("NDJSON writer failed", failure);
+  }
+
+  private void check() {
+    if (failure != null) throw new IllegalStateException("NDJSON writer failed", failure);
+    if (closed) throw new IllegalStateException("NDJSON writer closed");
+  }
+
+  private void run() {
+    List<Object> batch = new ArrayList<>(DRAIN);
+    long tick = cfg.fsyncInterval() == null ? 1000 : Math.max(1, Math.min(cfg.fsyncInterval().toMillis(), 1000));
+    try {
+      while (true) {
+        Object first = queue.poll(tick, TimeUnit.MILLISECONDS);
+        if (first == null) {                  // file vide : on pousse vers l'OS, rotation par âge
+          idle();
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, DRAIN - 1);
+        for (Object item : batch) {
+          if (item == EOF) {
+            closeCurrent();
+            return;
+          }
+          write(item);
         }
-        w.newLine();
+        batch.clear();
+        if (cfg.fsync() == Fsync.PERIODIC && due(lastSync, cfg.fsyncInterval())) sync();
       }
+    } catch (Throwable t) {
+      failure = t;
+      queue.clear();                          // débloque les producteurs, qui verront l'échec
+      try { closeCurrent(); } catch (Throwable ignore) { }
     }
   }
+
+  private void write(Object item) throws IOException {
+    if (gen == null) open();
+    WRITER.writeValue(gen, item);
+    gen.writeRaw('\n');
+    if (cfg.fsync() == Fsync.EVERY_N && ++sinceSync >= cfg.fsyncEvery()) sync();
+    if (counter.count + gen.getOutputBuffered() >= cfg.maxBytes() || due(openedAt, cfg.maxAge())) closeCurrent();
+  }
+
+  private void idle() throws IOException {
+    if (gen == null) return;
+    if (due(openedAt, cfg.maxAge())) { closeCurrent(); return; }
+    gen.flush();
+    if (cfg.fsync() == Fsync.PERIODIC && sinceSync > 0 && due(lastSync, cfg.fsyncInterval())) sync();
+  }
+
+  private void open() throws IOException {
+    current = cfg.dir().resolve(cfg.prefix() + "-" + LocalDateTime.now().format(TS) + "-" + (seq++) + ".ndjson" + cfg.codec().extension());
+    channel = FileChannel.open(current, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    counter = new Counting(BlockCompressedOutputStream.wrap(
+        new BufferedOutputStream(Channels.newOutputStream(channel), cfg.bufferSize()), cfg.codec()));
+    gen = MAPPER.getFactory().createGenerator(counter, JsonEncoding.UTF8);
+    gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    gen.setRootValueSeparator(null);
+    openedAt = lastSync = System.nanoTime();
+    sinceSync = 0;
+  }
+
+  private void sync() throws IOException {
+    if (gen == null) return;                  // fichier tout juste fermé par rotation
+    gen.flush();                              // générateur → (compression) → BufferedOutputStream → canal
+    channel.force(false);
+    lastSync = System.nanoTime();
+    sinceSync = 0;
+  }
+
+  private void closeCurrent() throws IOException {
+    if (gen == null) return;
+    try {
+      gen.close();
+      counter.flush();                        // vide aussi les blocs compressés en vol
+      channel.force(false);
+    } finally {
+      channel.close();
+      gen = null;
+      synchronized (this) { completed.add(current); }
+    }
+  }
+
+  private static boolean due(long since, Duration d) {
+    return d != null && !d.isZero() && System.nanoTime() - since >= d.toNanos();
+  }
+
+  private static final class Counting extends FilterOutputStream {
+    long count;
+    Counting(OutputStream out) { super(out); }
+    @Override public void write(int b) throws IOException { out.write(b); count++; }
+    @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); count += len; }
+  }
 }
 
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Relecture des fichiers NDJSON (non compressés) écrits par NdjsonWriter / RollingNdjsonWriter.
+ * Le fichier est mappé en mémoire par régions (< 1 Gio, coupées sur des débuts de ligne) ; l'index des
+ * débuts de ligne est construit une fois puis persisté à côté (<fichier>.idx, invalidé si taille ou
+ * date de modification changent). Accès direct à l'enregistrement n, streams parallèles par plages.
+ *
+ *   try (var r = NdjsonReader.open(file)) {
+ *     Paiement p = r.read(42, Paiement.class);
+ *     long eur = r.stream(Paiement.class).parallel().filter(x -> "EUR".equals(x.devise())).count();
+ *   }
+ */
+public final class NdjsonReader implements AutoCloseable {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long MAX_REGION = 1L << 30;
+  private static final long INDEX_MAGIC = 0x4E444A53_49445801L;   // "NDJSIDX" v1
+
+  private final Path file;
+  private final long fileSize;
+  private final long[] offsets;        // début de chaque ligne ; offsets[count] = fin des données
+  private final int count;
+  private final MappedByteBuffer[] regions;
+  private final long[] regionStart;    // offset fichier du début de chaque région
+
+  private NdjsonReader(Path file, long fileSize, long[] offsets, int count) throws IOException {
+    this.file = file;
+    this.fileSize = fileSize;
+    this.offsets = offsets;
+    this.count = count;
+    // régions coupées sur des débuts de ligne : une ligne n'est jamais à cheval sur deux mappings
+    long[] starts = new long[8];
+    int n = 0;
+    long start = 0;
+    int line = 0;
+    while (start < fileSize) {
+      if (n == starts.length) starts = Arrays.copyOf(starts, n * 2);
+      starts[n++] = start;
+      int next = line;
+      while (next < count && offsets[next + 1] - start <= MAX_REGION) next++;
+      if (next == line) next = line + 1;            // ligne plus grande qu'une région : non supporté
+      start = offsets[Math.min(next, count)];
+      line = next;
+      if (line >= count) break;
+    }
+    this.regionStart = Arrays.copyOf(starts, n);
+    this.regions = new MappedByteBuffer[n];
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      for (int i = 0; i < n; i++) {
+        long end = i + 1 < n ? regionStart[i + 1] : fileSize;
+        if (end - regionStart[i] > Integer.MAX_VALUE) throw new IOException("NDJSON line larger than 2 GiB in " + file);
+        regions[i] = ch.map(FileChannel.MapMode.READ_ONLY, regionStart[i], end - regionStart[i]);
+      }
+    }
+  }
+
+  /** Ouvre le fichier ; réutilise <file>.idx s'il est à jour, sinon reconstruit et persiste l'index. */
+  public static NdjsonReader open(Path file) throws IOException {
+    long size = Files.size(file);
+    long mtime = Files.getLastModifiedTime(file).toMillis();
+    Path idx = indexPath(file);
+    long[] offsets = loadIndex(idx, size, mtime);
+    if (offsets == null) {
+      offsets = buildIndex(file, size);
+      saveIndex(idx, offsets, size, mtime);
+    }
+    return new NdjsonReader(file, size, offsets, offsets.length - 1);
+  }
+
+  public static Path indexPath(Path file) {
+    return file.resolveSibling(file.getFileName() + ".idx");
+  }
+
+  public Path file() { return file; }
+
+  /** Nombre d'enregistrements. */
+  public long size() { return count; }
+
+  /** Octets de la ligne n, sans le '\n' final (vue en lecture seule sur le mapping, pas de copie). */
+  public ByteBuffer line(long n) {
+    int i = checkIndex(n);
+    long start = offsets[i];
+    long end = offsets[i + 1];
+    int r = region(start);
+    ByteBuffer buf = regions[r];
+    int from = (int) (start - regionStart[r]);
+    int len = (int) (end - start);
+    if (len > 0 && buf.get(from + len - 1) == '\n') len--;
+    if (len > 0 && buf.get(from + len - 1) == '\r') len--;
+    return buf.slice(from, len).asReadOnlyBuffer();
+  }
+
+  public <T> T read(long n, Class<T> type) {
+    return read(n, MAPPER.readerFor(type));
+  }
+
+  public JsonNode readTree(long n) {
+    return read(n, MAPPER.readerFor(JsonNode.class));
+  }
+
+  /** Stream des enregistrements [0, size) ; .parallel() répartit des plages disjointes entre les cœurs. */
+  public <T> Stream<T> stream(Class<T> type) {
+    return stream(0, count, type);
+  }
+
+  public <T> Stream<T> stream(long from, long to, Class<T> type) {
+    if (from < 0 || from > to || from > count) throw new IndexOutOfBoundsException(from);
+    ObjectReader reader = MAPPER.readerFor(type);
+    return StreamSupport.stream(new RangeSpliterator<>(this, reader, (int) from, (int) Math.min(to, count)), false);
+  }
+
+  @Override
+  public void close() {
+    // les MappedByteBuffer sont libérés par le GC ; rien à fermer côté canal (fermé après le map)
+    Arrays.fill(regions, null);
+  }
+
+  private <T> T read(long n, ObjectReader reader) {
+    try {
+      return reader.readValue(new ByteBufferBackedInputStream(line(n)));
+    } catch (IOException e) {
+      throw new UncheckedIOException("record " + n + " of " + file, e);
+    }
+  }
+
+  private int checkIndex(long n) {
+    if (n < 0 || n >= count) throw new IndexOutOfBoundsException(n);
+    return (int) n;
+  }
+
+  private int region(long offset) {
+    int r = Arrays.binarySearch(regionStart, offset);
+    return r >= 0 ? r : -r - 2;
+  }
+
+  private static long[] buildIndex(Path file, long size) throws IOException {
+    long[] offsets = new long[1024];
+    int n = 0;
+    offsets[n++] = 0;
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      for (long pos = 0; pos < size; pos += MAX_REGION) {
+        long len = Math.min(MAX_REGION, size - pos);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+        for (int i = 0; i < len; i++) {
+          if (buf.get(i) == '\n') {
+            if (n == offsets.length) offsets = Arrays.copyOf(offsets, n + (n >> 1));
+            offsets[n++] = pos + i + 1;
+          }
+        }
+      }
+    }
+    if (offsets[n - 1] != size) {                    // dernière ligne sans '\n' (fichier en cours d'écriture)
+      if (n == offsets.length) offsets = Arrays.copyOf(offsets, n + 1);
+      offsets[n++] = size;
+    }
+    return Arrays.copyOf(offsets, n);
+  }
+
+  private static long[] loadIndex(Path idx, long size, long mtime) {
+    if (!Files.isRegularFile(idx)) return null;
+    try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.READ)) {
+      ByteBuffer head = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+      while (head.hasRemaining() && ch.read(head) >= 0) { }
+      head.flip();
+      if (head.remaining() < 32 || head.getLong() != INDEX_MAGIC || head.getLong() != size || head.getLong() != mtime) return null;
+      int n = (int) head.getLong();
+      if (ch.size() != 32 + 8L * n) return null;
+      long[] offsets = new long[n];
+      ch.map(FileChannel.MapMode.READ_ONLY, 32, 8L * n).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(offsets);
+      return offsets;
+    } catch (IOException e) {
+      return null;                                   // index illisible : on le reconstruit
+    }
+  }
+
+  private static void saveIndex(Path idx, long[] offsets, long size, long mtime) {
+    ByteBuffer buf = ByteBuffer.allocate(32 + 8 * offsets.length).order(ByteOrder.LITTLE_ENDIAN);
+    buf.putLong(INDEX_MAGIC).putLong(size).putLong(mtime).putLong(offsets.length);
+    LongBuffer lb = buf.asLongBuffer();
+    lb.put(offsets);
+    try {
+      AtomicFiles.atomicWrite(buf.array(), idx);
+    } catch (Exception e) {
+      // dossier en lecture seule, etc. : l'index reste en mémoire, il sera reconstruit la prochaine fois
+    }
+  }
+
+  private static final class RangeSpliterator<T> implements Spliterator<T> {
+    private static final int MIN_SPLIT = 1024;
+    private final NdjsonReader r;
+    private final ObjectReader reader;
+    private int from;
+    private final int to;
+
+    RangeSpliterator(NdjsonReader r, ObjectReader reader, int from, int to) {
+      this.r = r;
+      this.reader = reader;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (from >= to) return false;
+      action.accept(r.read(from++, reader));
+      return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      int mid = (from + to) >>> 1;
+      if (to - from < 2 * MIN_SPLIT) return null;
+      Spliterator<T> prefix = new RangeSpliterator<>(r, reader, from, mid);
+      from = mid;
+      return prefix;
+    }
+
+    @Override public long estimateSize() { return to - from; }
+    @Override public int characteristics() { return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL; }
+  }
+}
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Rejoue les lignes d'un NdjsonReader à débit cible (lignes/s), à partir de `from`. Le rythme est
+ * calé sur l'horloge (pas de dérive cumulée) : un consommateur lent fait prendre du retard, qui est
+ * rattrapé ensuite sans attente. rate <= 0 = aussi vite que possible.
+ */
+public class NdjsonReplay {
+  private final NdjsonReader reader;
+  private final double ratePerSecond;
+
+  public NdjsonReplay(NdjsonReader reader, double ratePerSecond) {
+    this.reader = reader;
+    this.ratePerSecond = ratePerSecond;
+  }
+
+  /** Appelle sink pour chaque ligne (copie en byte[], utilisable hors du mapping) ; retourne le nombre rejoué. */
+  public long run(long from, Consumer<byte[]> sink) {
+    long start = System.nanoTime();
+    double nanosPerLine = ratePerSecond > 0 ? 1e9 / ratePerSecond : 0;
+    long sent = 0;
+    for (long n = from; n < reader.size(); n++, sent++) {
+      if (Thread.currentThread().isInterrupted()) break;
+      if (nanosPerLine > 0) {
+        long due = start + (long) (sent * nanosPerLine);
+        long wait = due - System.nanoTime();
+        if (wait > 0) LockSupport.parkNanos(wait);
+      }
+      ByteBuffer line = reader.line(n);
+      byte[] bytes = new byte[line.remaining()];
+      line.get(bytes);
+      sink.accept(bytes);
+    }
+    return sent;
+  }
+}
+
+
+replay:
+  file: /data/exports/paiements/batches/2026-10-18/batch-000001.ndjson
+  rate: 2000                      # lignes / s
+  to: direct:replay               # ex. kafka:payments-replay
+
+
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/** Relit le trafic d'hier au débit demandé et l'envoie sur `replay.to` (une ligne JSON par message). */
+@Component
+@ConditionalOnProperty(prefix = "replay", name = "file")
+public class NdjsonReplayRoute extends RouteBuilder {
+  @Value("${replay.file}") private Path file;
+  @Value("${replay.rate:1000}") private double rate;
+  @Value("${replay.to:direct:replay}") private String to;
+
+  @Override
+  public void configure() {
+    from("timer:ndjson-replay?repeatCount=1").routeId("ndjson-replay")
+        .process(exchange -> {
+          ProducerTemplate template = getContext().createProducerTemplate();
+          try (NdjsonReader reader = NdjsonReader.open(file)) {
+            long sent = new NdjsonReplay(reader, rate).run(0, line -> template.sendBody(to, line));
+            log.info("Replay {} : {} lignes envoyées vers {}", file, sent, to);
+          } finally {
+            template.stop();
+          }
+        });
+  }
+}
+
+<!-- zstd (optionnel : seulement pour Codec.ZSTD) -->
+<dependency>
+  <groupId>com.github.luben</groupId>
+  <artifactId>zstd-jni</artifactId>
+  <version>1.5.5-11</version>
+</dependency>
+
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression par blocs indépendants en parallèle (à la pigz) : le flux est découpé en blocs de
+ * blockSize octets, chacun compressé sur un thread du pool en un membre gzip (ou une frame zstd)
+ * complet ; les blocs sont écrits dans l'ordre. Des membres gzip / frames zstd concaténés forment
+ * un fichier valide : gzip -d, zcat, zstd -d, GZIPInputStream le relisent tel quel.
+ * Non thread-safe côté écriture (un producteur) ; close() ferme le flux sous-jacent.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+  public enum Codec {
+    NONE(""), GZIP(".gz"), ZSTD(".zst");
+
+    private final String extension;
+    Codec(String extension) { this.extension = extension; }
+    public String extension() { return extension; }
+  }
+
+  public static final int DEFAULT_BLOCK = 128 * 1024;   // reste sous le seuil des objets « humongous » G1
+
+  private static final ExecutorService POOL = Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "block-compress");
+        t.setDaemon(true);
+        return t;
+      });
+
+  private final OutputStream out;
+  private final Codec codec;
+  private final int level;
+  private final int blockSize;
+  private final int maxInFlight;
+  private final ExecutorService pool;
+  private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+  private byte[] block;
+  private int pos;
+  private boolean closed;
+
+  /** Retourne out tel quel pour Codec.NONE. */
+  public static OutputStream wrap(OutputStream out, Codec codec) {
+    return codec == Codec.NONE ? out : new BlockCompressedOutputStream(out, codec);
+  }
+
+  public BlockCompressedOutputStream(OutputStream out, Codec codec) {
+    this(out, codec, codec == Codec.ZSTD ? 3 : Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK, POOL,
+        2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  public BlockCompressedOutputStream(OutputStream out, Codec codec, int level, int blockSize,
+                                     ExecutorService pool, int maxInFlight) {
+    if (codec == Codec.NONE) throw new IllegalArgumentException("Codec.NONE: use wrap()");
+    this.out = out;
+    this.codec = codec;
+    this.level = level;
+    this.blockSize = blockSize;
+    this.pool = pool;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.block = new byte[blockSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (pos == blockSize) submit();
+    block[pos++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (pos == blockSize) submit();
+      int n = Math.min(len, blockSize - pos);
+      System.arraycopy(b, off, block, pos, n);
+      pos += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /** Ferme le bloc courant (même partiel) et attend l'écriture de tous les blocs : à réserver aux points de durabilité. */
+  @Override
+  public void flush() throws IOException {
+    if (pos > 0) submit();
+    while (!inFlight.isEmpty()) out.write(await(inFlight.poll()));
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    try {
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void submit() throws IOException {
+    byte[] full = block;
+    int len = pos;
+    inFlight.add(pool.submit(() -> compress(full, len)));
+    block = new byte[blockSize];    // le bloc soumis appartient désormais à la tâche
+    pos = 0;
+    // écrit dans l'ordre les blocs déjà prêts ; bloque seulement si trop de blocs en vol
+    while (!inFlight.isEmpty() && (inFlight.peek().isDone() || inFlight.size() > maxInFlight)) {
+      out.write(await(inFlight.poll()));
+    }
+  }
+
+  private byte[] compress(byte[] data, int len) throws IOException {
+    if (codec == Codec.ZSTD) {
+      byte[] dst = new byte[(int) Zstd.compressBound(len)];
+      long n = Zstd.compressByteArray(dst, 0, dst.length, data, 0, len, level);
+      if (Zstd.isError(n)) throw new IOException("zstd: " + Zstd.getErrorName(n));
+      return Arrays.copyOf(dst, (int) n);
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(len / 3 + 64);
+    try (GZIPOutputStream gz = new GZIPOutputStream(bos, 8192) { { def.setLevel(level); } }) {
+      gz.write(data, 0, len);
+    }
+    return bos.toByteArray();
+  }
+
+  private static byte[] await(Future<byte[]> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("compression interrupted", e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+    }
+  }
+}
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 import static java.nio.file.StandardCopyOption.*;
 
+/**
+ * Écritures atomiques et durables : on écrit dans un .tmp du même dossier, puis fsync du fichier,
+ * rename ATOMIC_MOVE, fsync du dossier (sans ce dernier, le rename peut être perdu après un crash).
+ *
+ *   try (var out = AtomicFiles.open(target)) { ... }      // flux, mémoire constante ; commit au close()
+ *   AtomicFiles.write(target, out -> ...);                 // idem, mais abort si le corps lève une exception
+ *
+ * Plusieurs fichiers : Manifest.create(...) prépare chaque fichier, commit() les publie puis écrit le
+ * manifeste (atomiquement, en dernier) ; un lecteur ne considère que les fichiers listés dedans.
+ * Un commit interrompu entre les renames et le manifeste est annulé par cleanTemps au redémarrage.
+ */
 public class AtomicFiles {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @FunctionalInterface
+  public interface Body {
+    void write(OutputStream out) throws Exception;
+  }
+
   public static void atomicWrite(byte[] bytes, Path target) throws Exception {
-    Files.createDirectories(target.getParent());
-    Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
-    Files.write(tmp, bytes);
+    try (AtomicOutput out = open(target)) {
+      out.write(bytes);
+    }
+  }
+
+  public static AtomicOutput open(Path target) throws IOException {
+    return new AtomicOutput(target, true);
+  }
+
+  public static void write(Path target, Body body) throws Exception {
+    AtomicOutput out = open(target);
+    try {
+      body.write(out);
+    } catch (Throwable t) {
+      out.abort();
+      throw t;
+    }
+    out.close();
+  }
+
+  public static Manifest manifest(Path dir, String manifestName) throws IOException {
+    return new Manifest(dir, manifestName);
+  }
+
+  /**
+   * Supprime les .tmp laissés par un crash et annule les commits de Manifest interrompus (fichiers
+   * listés dans un .pending sans manifeste publié) ; à appeler au démarrage, avant toute écriture dans dir.
+   */
+  public static int cleanTemps(Path dir) throws IOException {
+    if (!Files.isDirectory(dir)) return 0;
+    int n = 0;
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path p : (Iterable<Path>) files::iterator) {
+        String name = p.getFileName().toString();
+        if (name.endsWith(".tmp") && Files.deleteIfExists(p)) n++;
+        else if (name.endsWith(Manifest.PENDING)) n += Manifest.rollback(p);
+      }
+    }
+    return n;
+  }
+
+  static void publish(Path tmp, Path target) throws IOException {
     try {
       Files.move(tmp, target, ATOMIC_MOVE, REPLACE_EXISTING);
     } catch (AtomicMoveNotSupportedException e) {
       Files.move(tmp, target, REPLACE_EXISTING); // fallback si FS ne supporte pas ATOMIC_MOVE
     }
   }
+
+  static void fsyncDir(Path dir) throws IOException {
+    try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+      ch.force(true);
+    } catch (IOException e) {
+      // Windows n'ouvre pas les dossiers en lecture : pas de fsync de dossier possible (ni nécessaire)
+      if (!System.getProperty("os.name", "").startsWith("Windows")) throw e;
+    }
+  }
+
+  /**
+   * Flux vers un .tmp, utilisable comme OutputStream ou WritableByteChannel. close() = fsync + rename
+   * (+ fsync dossier) si `publishOnClose`, sinon fsync seul (fichier préparé pour un Manifest).
+   * En cas d'erreur d'écriture, appeler abort() plutôt que close() (ou utiliser AtomicFiles.write).
+   */
+  public static final class AtomicOutput extends OutputStream implements WritableByteChannel {
+    private static final int BUFFER = 256 * 1024;
+
+    private final Path target;
+    private final Path tmp;
+    private final boolean publishOnClose;
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+    private final MessageDigest sha256;
+    private long size;
+    private String digest;
+    private boolean closed;
+
+    AtomicOutput(Path target, boolean publishOnClose) throws IOException {
+      Path dir = target.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      this.target = target;
+      this.publishOnClose = publishOnClose;
+      // nom aléatoire plutôt que createTempFile, qui imposerait des droits 0600 au fichier publié
+      this.tmp = dir.resolve("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      try {
+        this.sha256 = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public Path target() { return target; }
+    public long size() { return size; }
+    public String sha256() { return digest; } // disponible après close()
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureOpen();
+      if (!buf.hasRemaining()) drain();
+      buf.put((byte) b);
+      sha256.update((byte) b);
+      size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ensureOpen();
+      sha256.update(b, off, len);
+      size += len;
+      if (len >= BUFFER) {                         // gros bloc : pas de copie dans le tampon
+        drain();
+        writeFully(ByteBuffer.wrap(b, off, len));
+        return;
+      }
+      if (buf.remaining() < len) drain();
+      buf.put(b, off, len);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      ensureOpen();
+      drain();
+      int n = src.remaining();
+      sha256.update(src.duplicate());
+      writeFully(src);
+      size += n;
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() { return !closed; }
+
+    @Override
+    public void flush() throws IOException {
+      ensureOpen();
+      drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      try {
+        drain();
+        channel.force(true);
+      } catch (IOException e) {
+        abort();
+        throw e;
+      }
+      channel.close();
+      closed = true;
+      digest = HexFormat.of().formatHex(sha256.digest());
+      if (publishOnClose) commitTo();
+    }
+
+    /** Abandonne : le .tmp est supprimé, la cible n'est pas touchée. */
+    public void abort() {
+      closed = true;
+      try { channel.close(); } catch (IOException ignore) { }
+      try { Files.deleteIfExists(tmp); } catch (IOException ignore) { }
+    }
+
+    void commitTo() throws IOException {
+      publish(tmp, target);
+      fsyncDir(target.toAbsolutePath().getParent());
+    }
+
+    private void drain() throws IOException {
+      buf.flip();
+      writeFully(buf);
+      buf.clear();
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+      while (src.hasRemaining()) channel.write(src);
+    }
+
+    private void ensureOpen() throws IOException {
+      if (closed) throw new IOException("closed: " + target);
+    }
+  }
+
+  /**
+   * Commit multi-fichiers : les fichiers créés via create() ne sont publiés qu'au commit(), qui écrit
+   * ensuite `manifestName` (nom, taille, sha256 de chaque fichier). close() sans commit() = abort.
+   * Le manifeste est d'abord écrit sous .<manifestName>.pending, avant les renames, puis renommé en
+   * dernier : après un crash entre les deux, cleanTemps retrouve et supprime les fichiers déjà renommés.
+   */
+  public static final class Manifest implements AutoCloseable {
+    static final String PENDING = ".pending";
+
+    private final Path dir;
+    private final String manifestName;
+    private final List<AtomicOutput> staged = new ArrayList<>();
+    private boolean done;
+
+    Manifest(Path dir, String manifestName) throws IOException {
+      this.dir = dir;
+      this.manifestName = manifestName;
+      Files.createDirectories(dir);
+    }
+
+    public synchronized AtomicOutput create(String name) throws IOException {
+      if (done) throw new IllegalStateException("manifest already committed");
+      AtomicOutput out = new AtomicOutput(dir.resolve(name), false);
+      staged.add(out);
+      return out;
+    }
+
+    public synchronized Path commit() throws Exception {
+      if (done) throw new IllegalStateException("manifest already committed");
+      done = true;
+      List<Map<String, Object>> files = new ArrayList<>();
+      staged.sort(Comparator.comparing(AtomicOutput::target));
+      for (AtomicOutput out : staged) {
+        out.close();                                // fsync des fichiers pas encore fermés
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("name", out.target().getFileName().toString());
+        e.put("size", out.size());
+        e.put("sha256", out.sha256());
+        files.add(e);
+      }
+      Map<String, Object> manifest = new LinkedHashMap<>();
+      manifest.put("committedAt", Instant.now().toString());
+      manifest.put("files", files);
+      Path target = dir.resolve(manifestName);
+      Path pending = dir.resolve("." + manifestName + PENDING);
+      atomicWrite(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest), pending); // intention, durable
+      for (AtomicOutput out : staged) publish(out.tmp, out.target());
+      fsyncDir(dir);                                // tous les renames durables avant le manifeste
+      publish(pending, target);
+      fsyncDir(dir);
+      return target;
+    }
+
+    /** Annule un commit interrompu : supprime les fichiers listés par le manifeste en attente, puis celui-ci. */
+    static int rollback(Path pending) throws IOException {
+      int n = 0;
+      for (JsonNode f : MAPPER.readTree(pending.toFile()).path("files")) {
+        if (Files.deleteIfExists(pending.resolveSibling(f.path("name").asText()))) n++;
+      }
+      Files.delete(pending);
+      fsyncDir(pending.getParent());
+      return n + 1;
+    }
+
+    @Override
+    public synchronized void close() {
+      if (done) return;
+      done = true;
+      staged.forEach(AtomicOutput::abort);
+    }
+  }
 }
 
 
 app:
   export-dir: /data/exports   # monte /data en volume Docker
+  export:
+    batch-size: 50000         # paiements par fichier NDJSON
+    concurrency: 4            # fichiers écrits en parallèle
+    codec: GZIP               # NONE | GZIP | ZSTD
 
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "app")
-public record AppProps(String exportDir) {}
+public record AppProps(String exportDir, Export export) {
+  public AppProps {
+    if (export == null) export = new Export(null, null, null);
+  }
+
+  public record Export(Integer batchSize, Integer concurrency, BlockCompressedOutputStream.Codec codec) {
+    public Export {
+      if (batchSize == null) batchSize = 50_000;
+      if (concurrency == null) concurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+      if (codec == null) codec = BlockCompressedOutputStream.Codec.NONE;
+    }
+  }
+}
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.io.IOException;
 import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
+/**
+ * Export des paiements.
+ *  - writePayment : un fichier JSON par paiement, rangé dans paiements/xx/yy/ (hash de la référence)
+ *    pour éviter les répertoires à plusieurs millions d'entrées.
+ *  - exportAll / exportAsync : lots de batchSize paiements par fichier NDJSON (éventuellement compressé),
+ *    au plus `concurrency` fichiers en cours d'écriture ; le producteur attend si tous les slots sont pris.
+ */
 @Service
-public class ExportService {
+public class ExportService implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+  private static final ObjectWriter PRETTY = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+  public record ExportReport(long records, int files, long bytes, Duration elapsed) {
+    public double recordsPerSecond() {
+      return elapsed.isZero() ? records : records * 1e9 / elapsed.toNanos();
+    }
+  }
+
   private final Path baseDir;
-  public ExportService(AppProps props) { this.baseDir = Path.of(props.exportDir()); }
+  private final AppProps.Export cfg;
+  private final ExecutorService pool;
+  private final Semaphore slots;
+
+  public ExportService(AppProps props) {
+    this.baseDir = Path.of(props.exportDir());
+    this.cfg = props.export();
+    this.pool = Executors.newFixedThreadPool(cfg.concurrency(), r -> {
+      Thread t = new Thread(r, "export-writer");
+      t.setDaemon(true);
+      return t;
+    });
+    this.slots = new Semaphore(cfg.concurrency());
+    cleanTemps();
+  }
 
   public Path writePayment(Paiement p) throws Exception {
-    Path file = baseDir.resolve("paiements").resolve(p.reference() + ".json");
+    Path file = shardDir(p.reference()).resolve(p.reference() + ".json");
     Files.createDirectories(file.getParent());
-    new com.fasterxml.jackson.databind.ObjectMapper()
-        .writerWithDefaultPrettyPrinter()
-        .writeValue(file.toFile(), p);
+    PRETTY.writeValue(file.toFile(), p);
     return file;
   }
+
+  /** Exporte le flux par lots ; retourne quand tous les fichiers sont écrits. */
+  public ExportReport exportAll(Stream<Paiement> payments) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    Path dir = batchesDir().resolve(LocalDate.now().toString());
+    // identifiant d'export : plusieurs exports le même jour (ou après redémarrage) ne s'écrasent jamais
+    String run = System.currentTimeMillis() + "-" + String.format("%08x", ThreadLocalRandom.current().nextInt());
+    long seq = 0;
+    AtomicLong records = new AtomicLong(), bytes = new AtomicLong();
+    AtomicInteger files = new AtomicInteger();
+    List<CompletableFuture<Void>> pending = new ArrayList<>();
+    AtomicBoolean failed = new AtomicBoolean();
+    // les lots ne sont publiés qu'au commit du manifeste ; un export interrompu ne laisse que des .tmp,
+    // ou un commit inachevé, supprimés par cleanTemps au prochain démarrage
+    AtomicFiles.Manifest manifest = AtomicFiles.manifest(dir, "manifest-" + run + ".json");
+
+    Iterator<Paiement> it = payments.iterator();
+    while (it.hasNext() && !failed.get()) {               // premier lot en échec : on arrête de lire le flux
+      List<Paiement> batch = new ArrayList<>(cfg.batchSize());
+      while (it.hasNext() && batch.size() < cfg.batchSize()) batch.add(it.next());
+      String name = "batch-" + run + "-" + String.format("%06d", ++seq) + ".ndjson" + cfg.codec().extension();
+      slots.acquire();                                  // back-pressure : au plus `concurrency` lots en mémoire / en écriture
+      if (failed.get()) {
+        slots.release();
+        break;
+      }
+      pending.add(CompletableFuture.runAsync(() -> {
+        try {
+          AtomicFiles.AtomicOutput out = manifest.create(name);
+          NdjsonWriter.writeNdjson(batch, out, cfg.codec());
+          records.addAndGet(batch.size());
+          bytes.addAndGet(out.size());
+          files.incrementAndGet();
+        } catch (Exception e) {
+          failed.set(true);
+          throw new CompletionException(e);
+        } finally {
+          slots.release();
+        }
+      }, pool));
+    }
+    try (manifest) {
+      CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+      manifest.commit();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof IOException io ? io : new IOException("export failed", e.getCause());
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("export commit failed", e);
+    }
+
+    ExportReport report = new ExportReport(records.get(), files.get(), bytes.get(), Duration.ofNanos(System.nanoTime() - start));
+    log.info("Export paiements : {} enregistrements, {} fichiers, {} octets en {} ms ({} enr/s)",
+        report.records(), report.files(), report.bytes(), report.elapsed().toMillis(), Math.round(report.recordsPerSecond()));
+    return report;
+  }
+
+  public CompletableFuture<ExportReport> exportAsync(List<Paiement> payments) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return exportAll(payments.stream());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException("export interrupted");
+      }
+    });
+  }
+
+  @Override
+  public void destroy() {
+    pool.shutdown();
+  }
+
+  private Path batchesDir() {
+    return baseDir.resolve("paiements").resolve("batches");
+  }
+
+  /**
+   * .tmp et commits de manifeste inachevés laissés par un arrêt brutal, supprimés une fois au démarrage : pendant l'exécution, un autre
+   * export du même jour peut avoir ses .tmp en cours d'écriture dans le même dossier.
+   */
+  private void cleanTemps() {
+    if (!Files.isDirectory(batchesDir())) return;
+    try (Stream<Path> days = Files.list(batchesDir())) {
+      int n = 0;
+      for (Path day : (Iterable<Path>) days::iterator) n += AtomicFiles.cleanTemps(day);
+      if (n > 0) log.info("Export paiements : {} fichiers orphelins (.tmp, commit inachevé) supprimés", n);
+    } catch (IOException e) {
+      log.warn("Nettoyage des .tmp impossible sous {}", batchesDir(), e);
+    }
+  }
+
+  private Path shardDir(String reference) {
+    int h = reference.hashCode() * 0x9E3779B9;       // dispersion : références souvent séquentielles
+    return baseDir.resolve("paiements")
+        .resolve(String.format("%02x", (h >>> 24) & 0xff))
+        .resolve(String.format("%02x", (h >>> 16) & 0xff));
+  }
 }
 
 services:
@@ -96,7 +1273,6 @@ services:
     image: myorg/myapp:latest
     environment:
       - APP_EXPORT-DIR=/data/exports
+      - APP_EXPORT_CODEC=GZIP
     volumes:
-      - ./exports:/data/exports   # HORS classpath → sur l’hôte
-
-
+      - ./exports:/data/exports   # HORS classpath → sur l’hôte
\ No newline at end of file
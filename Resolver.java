@@ -1,3 +1,5 @@
+package com.acme.jsonschema;
+
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.*;
@@ -5,8 +7,6 @@ import com.fasterxml.jackson.databind.node.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 
@@ -16,21 +16,41 @@ import java.util.*;
  * - Supporte $ref placé dans "type" (type: { $ref: ... }) : remplace type par la valeur résolue et fusionne les contraintes.
  * - Ajoute un "type" lorsqu'il manque (inférence simple ; fallback "object").
  * - Détecte les cycles et lève une IllegalStateException (modifiable selon besoin).
+ * - Optionnel : au-delà d’un seuil de taille, un document local est indexé (IndexedJsonDocument)
+ *   et seuls les fragments référencés sont lus, via mmap, au lieu de parser tout le fichier.
  */
 public class JsonSchemaResolver {
+    // Mots-clés dont la valeur est une map nom -> schéma (et non un schéma)
+    private static final Set<String> SCHEMA_MAPS =
+            Set.of("properties", "patternProperties", "definitions", "$defs", "dependentSchemas");
+
     private final ObjectMapper mapper;
     private final SchemaLoader loader;
 
     // Cache des documents chargés: docURI -> JsonNode
     private final Map<URI, JsonNode> docCache = new HashMap<>();
+    // Index des gros documents: docURI -> index (null = document non indexable / sous le seuil)
+    private final Map<URI, IndexedJsonDocument> indexCache = new HashMap<>();
     // Cache des fragments résolus: fullURI (doc+fragment) -> JsonNode
     private final Map<URI, JsonNode> refCache = new HashMap<>();
     // Pile en cours de résolution pour détection de cycles
     private final Deque<URI> resolvingStack = new ArrayDeque<>();
 
+    // Taille (octets) à partir de laquelle un document local est indexé plutôt que chargé (-1 = jamais)
+    private final long indexThresholdBytes;
+
     public JsonSchemaResolver(SchemaLoader loader) {
+        this(loader, -1);
+    }
+
+    /**
+     * @param indexThresholdBytes seuil de taille au-delà duquel un document local est indexé et lu
+     *                            par fragments (mmap) au lieu d’être chargé en entier ; -1 pour désactiver
+     */
+    public JsonSchemaResolver(SchemaLoader loader, long indexThresholdBytes) {
         this.mapper = new ObjectMapper();
         this.loader = loader;
+        this.indexThresholdBytes = indexThresholdBytes;
     }
 
     /** API principale */
@@ -38,6 +58,13 @@ public class JsonSchemaResolver {
         return resolveNode(root, normalizeBase(baseUri));
     }
 
+    /** Documents externes chargés (ou indexés) pendant la résolution — utile pour invalider un cache. */
+    public Set<URI> loadedDocuments() {
+        Set<URI> docs = new LinkedHashSet<>(docCache.keySet());
+        indexCache.forEach((uri, idx) -> { if (idx != null) docs.add(uri); });
+        return docs;
+    }
+
     // --------- Cœur de la résolution ---------
 
     private JsonNode resolveNode(JsonNode node, URI baseUri) {
@@ -81,7 +108,14 @@ public class JsonSchemaResolver {
             List<Map.Entry<String, JsonNode>> fields = new ArrayList<>();
             it.forEachRemaining(fields::add);
             for (Map.Entry<String, JsonNode> e : fields) {
-                obj.set(e.getKey(), resolveNode(e.getValue(), baseUri));
+                String key = e.getKey();
+                if (key.startsWith("x-")) continue;   // extensions (x-source…) : pas des schémas, laissées telles quelles
+                if (SCHEMA_MAPS.contains(key) && e.getValue().isObject()) {
+                    // nom -> schéma : chaque membre est résolu, la map elle-même ne reçoit pas de "type"
+                    obj.set(key, resolveMembers((ObjectNode) e.getValue(), baseUri));
+                } else {
+                    obj.set(key, resolveNode(e.getValue(), baseUri));
+                }
             }
 
             // 4) S’assurer que chaque objet schéma a un "type"
@@ -99,6 +133,16 @@ public class JsonSchemaResolver {
         }
     }
 
+    private ObjectNode resolveMembers(ObjectNode map, URI baseUri) {
+        ObjectNode out = map.deepCopy();
+        List<String> names = new ArrayList<>();
+        out.fieldNames().forEachRemaining(names::add);
+        for (String name : names) {
+            out.set(name, resolveNode(out.get(name), baseUri));
+        }
+        return out;
+    }
+
     /** Résout un objet de schéma contenant "$ref" (+ merge des propriétés locales). */
     private JsonNode resolveRefObject(ObjectNode refHolder, URI baseUri) {
         String refStr = refHolder.get("$ref").asText();
@@ -128,10 +172,17 @@ public class JsonSchemaResolver {
         resolvingStack.push(full);
         try {
             URI docUri = withoutFragment(full);
-            String frag = full.getFragment(); // peut être null
-            JsonNode doc = loadDocument(docUri);
+            String frag = full.getFragment(); // déjà décodé (%XX) par URI ; peut être null
+
+            // Gros document indexé : on ne matérialise que le fragment demandé
+            IndexedJsonDocument indexed = (frag == null || frag.isEmpty()) ? null : indexedDocument(docUri);
+            JsonNode target = (indexed != null) ? indexed.fragment(frag) : null;
+            if (target != null) {
+                refCache.put(full, target);
+                return target;
+            }
 
-            JsonNode target;
+            JsonNode doc = loadDocument(docUri);
             if (frag == null || frag.isEmpty()) {
                 target = doc;
             } else {
@@ -166,6 +217,23 @@ public class JsonSchemaResolver {
         }
     }
 
+    /** Index du document s’il est local et dépasse le seuil, sinon null (chargement complet classique). */
+    private IndexedJsonDocument indexedDocument(URI docUri) {
+        if (indexThresholdBytes < 0 || docUri == null) return null;
+        if (indexCache.containsKey(docUri)) return indexCache.get(docUri);
+        IndexedJsonDocument indexed = null;
+        try {
+            Path p = loader.localPath(docUri);
+            if (p != null && Files.size(p) >= indexThresholdBytes) {
+                indexed = IndexedJsonDocument.index(p, mapper);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur d’indexation " + docUri + ": " + e.getMessage(), e);
+        }
+        indexCache.put(docUri, indexed);
+        return indexed;
+    }
+
     // --------- Utils schéma ---------
 
     /** Ajoute "type" si absent, par heuristique. */
@@ -253,8 +321,8 @@ public class JsonSchemaResolver {
     }
 
     private static String decodeFragmentToPointer(String frag) {
-        // Pour "#/definitions/X" → "/definitions/X" (décodage percent + JSON Pointer)
-        String f = URLDecoder.decode(frag, StandardCharsets.UTF_8);
+        // Pour "#/definitions/X" → "/definitions/X" ; frag vient de URI.getFragment(), déjà décodé
+        String f = frag;
         if (!f.startsWith("/")) {
             // JSON Schema autorise aussi des id autres que pointer (peu courant). On force pointer s’il manque le /
             if (f.equals("") || f.equals("#")) return "";
@@ -299,6 +367,11 @@ public class JsonSchemaResolver {
     public interface SchemaLoader {
         /** Ouvre un InputStream pour l’URI donné (file:, classpath:, http:, etc. selon implémentation) */
         InputStream open(URI uri) throws IOException;
+
+        /** Chemin local du document s’il existe sur disque (permet indexation + mmap), sinon null. */
+        default Path localPath(URI uri) {
+            return null;
+        }
     }
 
     /** Loader basique fichiers locaux (file:) + classpath: */
@@ -313,10 +386,7 @@ public class JsonSchemaResolver {
         public InputStream open(URI uri) throws IOException {
             String scheme = uri.getScheme();
             if (scheme == null || "file".equalsIgnoreCase(scheme)) {
-                Path p = (uri.getPath() == null || uri.getPath().isEmpty())
-                        ? baseDir
-                        : baseDir.resolve(uri.getPath().startsWith("/") ? uri.getPath().substring(1) : uri.getPath());
-                return Files.newInputStream(p.normalize());
+                return Files.newInputStream(localPath(uri));
             } else if ("classpath".equalsIgnoreCase(scheme)) {
                 String path = uri.getSchemeSpecificPart();
                 InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
@@ -326,6 +396,16 @@ public class JsonSchemaResolver {
                 throw new IOException("Schéma non supporté pour l’instant: " + scheme + " (" + uri + ")");
             }
         }
+
+        @Override
+        public Path localPath(URI uri) {
+            String scheme = uri.getScheme();
+            if (scheme != null && !"file".equalsIgnoreCase(scheme)) return null;
+            Path p = (uri.getPath() == null || uri.getPath().isEmpty())
+                    ? baseDir
+                    : baseDir.resolve(uri.getPath().startsWith("/") ? uri.getPath().substring(1) : uri.getPath());
+            return p.normalize();
+        }
     }
 
     // ---------- Demo main (facultatif) ----------
@@ -333,14 +413,268 @@ public class JsonSchemaResolver {
         Path base = Paths.get("schemas");            // dossier contenant vos fichiers .json
         Path rootFile = base.resolve("root.json");   // schéma racine
         ObjectMapper mapper = new ObjectMapper();
-        ObjectNode root = (ObjectNode) mapper.readTree(Files.newInputStream(rootFile));
 
-        JsonSchemaResolver resolver = new JsonSchemaResolver(new FileSystemSchemaLoader(base));
-        JsonNode resolved = resolver.resolve(root, rootFile.toUri());
+        // Cache binaire (Smile) : relu directement si aucun document source n’a changé
+        ResolvedSchemaCache cache = new ResolvedSchemaCache(base.resolve("out/.cache"), new FileSystemSchemaLoader(base));
+        JsonNode resolved = cache.load(rootFile.toUri());
 
         Files.createDirectories(base.resolve("out"));
         Path out = base.resolve("out/root-resolved.json");
         mapper.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), resolved);
         System.out.println("OK -> " + out.toAbsolutePath());
     }
+}
+
+
+package com.acme.jsonschema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IndexedJsonDocument — accès par fragment à un (très) gros document JSON Schema sur disque.
+ * - Un seul passage en streaming (JsonParser) : enregistre la plage d’octets [début, fin) de chaque entrée
+ *   sous "definitions" / "$defs" (à toute profondeur) et de chaque objet portant "$id" / "$anchor".
+ * - Seuls les fragments demandés sont matérialisés (readTree), lus depuis une projection mémoire du fichier.
+ * - En heap, on ne garde que l’index (JSON Pointer -> offsets), jamais l’arbre complet.
+ */
+public class IndexedJsonDocument {
+    private final Path file;
+    private final ObjectMapper mapper;
+
+    // JSON Pointer (forme échappée ~0/~1) -> {offset début, offset fin}
+    private final Map<String, long[]> ranges = new HashMap<>();
+    // Nom ($id ou $anchor) -> JSON Pointer de l’objet porteur
+    private final Map<String, String> names = new HashMap<>();
+
+    private IndexedJsonDocument(Path file, ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    /** Indexe le fichier en un seul passage streaming. */
+    public static IndexedJsonDocument index(Path file, ObjectMapper mapper) throws IOException {
+        IndexedJsonDocument doc = new IndexedJsonDocument(file, mapper);
+        try (JsonParser p = mapper.getFactory().createParser(file.toFile())) {
+            if (p.nextToken() != null) {
+                doc.scan(p, "", false);
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Fragment demandé, déjà décodé comme par URI.getFragment() ("/definitions/X/properties/a", ou nom
+     * $anchor/$id), ou null si l’index ne le couvre pas (l’appelant retombe alors sur un chargement complet).
+     */
+    public JsonNode fragment(String fragment) {
+        String f = fragment;
+        String pointer = f.startsWith("/") ? f : names.get(f.startsWith("#") ? f.substring(1) : f);
+        if (pointer == null) return null;
+
+        // Plus long préfixe indexé, puis navigation dans le sous-arbre matérialisé
+        String prefix = pointer;
+        while (!ranges.containsKey(prefix)) {
+            int slash = prefix.lastIndexOf('/');
+            if (slash < 0) return null;
+            prefix = prefix.substring(0, slash);
+        }
+        JsonNode node = materialize(ranges.get(prefix));
+        JsonNode target = node.at(pointer.substring(prefix.length()));
+        return target.isMissingNode() ? null : target;
+    }
+
+    public int indexedFragments() {
+        return ranges.size();
+    }
+
+    // --------- Indexation ---------
+
+    /** Parcourt la valeur courante (token déjà lu) et enregistre sa plage si elle est adressable. */
+    private void scan(JsonParser p, String pointer, boolean record) throws IOException {
+        long start = p.getTokenLocation().getByteOffset();
+        boolean named = false;
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.START_OBJECT) {
+            boolean definitions = pointer.endsWith("/definitions") || pointer.endsWith("/$defs");
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken v = p.nextToken();
+                if (v == JsonToken.VALUE_STRING && ("$id".equals(name) || "$anchor".equals(name))) {
+                    String id = p.getText();
+                    names.put(id.startsWith("#") ? id.substring(1) : id, pointer);
+                    named = true;
+                }
+                scan(p, pointer + "/" + escape(name), definitions);
+            }
+        } else if (t == JsonToken.START_ARRAY) {
+            int i = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                scan(p, pointer + "/" + i++, false);
+            }
+        }
+        // la racine n’est jamais indexée : sa plage serait le fichier entier (un $id racine est courant)
+        if ((record || named) && !pointer.isEmpty()) {
+            ranges.put(pointer, new long[]{start, p.getCurrentLocation().getByteOffset()});
+        }
+    }
+
+    private static String escape(String segment) {
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+
+    // --------- Lecture mmap ---------
+
+    private JsonNode materialize(long[] range) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // la projection reste valide après fermeture du canal
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+            return mapper.readTree(new ByteBufferBackedInputStream(buf));
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur de lecture " + file + " @" + range[0] + ": " + e.getMessage(), e);
+        }
+    }
+}
+
+
+<dependency>
+  <groupId>com.fasterxml.jackson.dataformat</groupId>
+  <artifactId>jackson-dataformat-smile</artifactId>
+  <version>2.15.2</version>
+</dependency>
+
+
+package com.acme.jsonschema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * ResolvedSchemaCache — cache disque des schémas déjà résolus, au format binaire Smile.
+ * - Une entrée par schéma racine ; elle mémorise le SHA-256 de chaque document lu pendant la résolution
+ *   (racine + $ref externes) et le schéma résolu.
+ * - Au démarrage : si tous les hash correspondent encore, le schéma résolu est relu tel quel (aucune résolution).
+ * - Sinon : résolution complète (JsonSchemaResolver) puis réécriture atomique de l’entrée.
+ */
+public class ResolvedSchemaCache {
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path dir;
+    private final JsonSchemaResolver.SchemaLoader loader;
+    private final long indexThresholdBytes;
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+    public ResolvedSchemaCache(Path dir, JsonSchemaResolver.SchemaLoader loader) {
+        this(dir, loader, -1);
+    }
+
+    public ResolvedSchemaCache(Path dir, JsonSchemaResolver.SchemaLoader loader, long indexThresholdBytes) {
+        this.dir = dir;
+        this.loader = loader;
+        this.indexThresholdBytes = indexThresholdBytes;
+    }
+
+    /** Schéma racine résolu, depuis le cache si toutes ses sources sont inchangées. */
+    public JsonNode load(URI rootUri) {
+        Path entry = dir.resolve(sha256(rootUri.toString().getBytes(StandardCharsets.UTF_8)) + ".smile");
+        JsonNode cached = readValid(entry);
+        if (cached != null) return cached;
+
+        try {
+            JsonNode root;
+            try (InputStream in = loader.open(rootUri)) {
+                if (in == null) throw new IllegalArgumentException("Impossible de charger: " + rootUri);
+                root = json.readTree(in);
+            }
+            JsonSchemaResolver resolver = new JsonSchemaResolver(loader, indexThresholdBytes);
+            JsonNode resolved = resolver.resolve(root, rootUri);
+
+            ObjectNode out = smile.createObjectNode();
+            out.put("version", FORMAT_VERSION);
+            ObjectNode deps = out.putObject("deps");
+            deps.put(rootUri.toString(), hashOf(rootUri));
+            for (URI doc : resolver.loadedDocuments()) {
+                deps.put(doc.toString(), hashOf(doc));
+            }
+            out.set("schema", resolved);
+            write(entry, smile.writeValueAsBytes(out));
+            return resolved;
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur de résolution " + rootUri + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Entrée valide (même format, toutes les sources inchangées) ou null. */
+    private JsonNode readValid(Path entry) {
+        if (!Files.isRegularFile(entry)) return null;
+        try {
+            JsonNode node = smile.readTree(entry.toFile());
+            if (node.path("version").asInt() != FORMAT_VERSION) return null;
+            Iterator<Map.Entry<String, JsonNode>> it = node.path("deps").fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> dep = it.next();
+                if (!dep.getValue().asText().equals(hashOf(URI.create(dep.getKey())))) return null;
+            }
+            return node.get("schema");
+        } catch (IOException e) {
+            // entrée corrompue ou source disparue : on résout à nouveau
+            return null;
+        }
+    }
+
+    private String hashOf(URI doc) throws IOException {
+        try (InputStream in = loader.open(doc)) {
+            if (in == null) throw new IOException("Impossible de charger: " + doc);
+            MessageDigest md = digest();
+            byte[] buf = new byte[64 * 1024];
+            for (int n; (n = in.read(buf)) > 0; ) md.update(buf, 0, n);
+            return HexFormat.of().formatHex(md.digest());
+        }
+    }
+
+    private void write(Path entry, byte[] bytes) throws IOException {
+        Files.createDirectories(entry.getParent());
+        Path tmp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+        Files.write(tmp, bytes);
+        try {
+            Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(digest().digest(bytes));
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
\ No newline at end of file
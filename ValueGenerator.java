@@ -1,13 +1,20 @@
 package com.acme.datagen;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Générateur générique de valeurs.
  * Non thread-safe par défaut (car état interne possible : index cyclique, shuffle...).
+ * Pour paralléliser : split() détache des sous-générateurs indépendants (graine dérivée, état propre),
+ * et stream(n) s'en sert pour découper le travail sans verrou.
  */
 public interface ValueGenerator<T> extends Supplier<T> {
 
@@ -20,10 +27,60 @@ public interface ValueGenerator<T> extends Supplier<T> {
     /** Stream infini (attention à limiter). */
     default Stream<T> stream() { return Stream.generate(this::next); }
 
-    /** Liste de N valeurs. */
+    /** Stream fini de N valeurs, parallélisable (.parallel()) si le générateur est splittable. */
+    default Stream<T> stream(long n) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        return StreamSupport.stream(new GeneratorSpliterator<>(this, n), false);
+    }
+
+    /** Liste de N valeurs (remplie en bloc via fill). */
+    @SuppressWarnings("unchecked")
     default List<T> take(int n) {
         if (n < 0) throw new IllegalArgumentException("n must be >= 0");
-        return stream().limit(n).toList();
+        T[] out = (T[]) new Object[n];
+        fill(out, 0, n);
+        return Collections.unmodifiableList(Arrays.asList(out));
+    }
+
+    /**
+     * Remplit dst[off, off+len) ; même séquence que len appels à next().
+     * À surcharger quand le générateur sait produire un lot plus vite (copie de plages, tirages groupés).
+     */
+    default void fill(T[] dst, int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) dst[i] = next();
+    }
+
+    /** Pousse les N prochaines valeurs vers sink ; même séquence que N appels à next(). */
+    default void nextBatch(int n, Consumer<? super T> sink) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        for (int i = 0; i < n; i++) sink.accept(next());
+    }
+
+    /** Vrai si split() est supporté. */
+    default boolean isSplittable() { return false; }
+
+    /** Sous-générateur indépendant, dérivé de façon déterministe de l'état courant. */
+    default ValueGenerator<T> split() { return split(0); }
+
+    /**
+     * Détache un sous-générateur chargé des {@code count} prochaines valeurs :
+     * les modes positionnels (CYCLIC) avancent d'autant, les modes aléatoires dérivent une nouvelle graine.
+     */
+    default ValueGenerator<T> split(long count) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not splittable");
+    }
+
+    /**
+     * {@code parts} sous-générateurs créés dans l'ordre, donc identiques pour un même état de départ :
+     * les modes aléatoires dérivent une graine par partie, les modes à rangs (PERMUTATION) se partagent
+     * les rangs restants à parts égales. Un sous-générateur par worker, chacun utilisé sans verrou.
+     */
+    default List<ValueGenerator<T>> splitInto(int parts) {
+        if (parts < 1) throw new IllegalArgumentException("parts must be >= 1");
+        List<ValueGenerator<T>> out = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) out.add(split());
+        return out;
     }
 
     /** Enveloppe utilitaire : impose l’unicité (jusqu’à maxAttempts pour trouver un nouveau). */
@@ -40,7 +97,71 @@ public enum SelectionMode {
     /** Parcours circulaire déterministe (0,1,2,...,0,1,2...). */
     CYCLIC,
     /** Parcours par cycles mélangés sans répétition intra-cycle (shuffle puis itération). */
-    SHUFFLE_NO_REPEAT
+    SHUFFLE_NO_REPEAT,
+    /** Tirage pondéré par des poids explicites (table d'alias, O(1) par tirage). */
+    WEIGHTED,
+    /** Loi de Zipf / puissance : le rang k (0 = premier élément) a un poids 1/(k+1)^skew (clés "chaudes"). */
+    ZIPF
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * Table d'alias (méthode de Vose) : tirage d'un index selon des poids arbitraires en O(1),
+ * après une construction en O(n). Immuable, partageable entre sous-générateurs.
+ */
+final class AliasTable {
+    private final double[] prob;
+    private final int[] alias;
+
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) throw new IllegalArgumentException("weights must not be empty");
+        double sum = 0;
+        for (double w : weights) {
+            if (!(w >= 0) || Double.isInfinite(w)) throw new IllegalArgumentException("weights must be finite and >= 0");
+            sum += w;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("at least one weight must be > 0");
+
+        this.prob = new double[n];
+        this.alias = new int[n];
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>(), large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int s = small.pop(), l = large.pop();
+            prob[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            (scaled[l] < 1.0 ? small : large).push(l);
+        }
+        // reliquats (arrondis flottants) : probabilité 1
+        while (!large.isEmpty()) prob[large.pop()] = 1.0;
+        while (!small.isEmpty()) prob[small.pop()] = 1.0;
+    }
+
+    int sample(SplittableRandom rnd) {
+        int i = rnd.nextInt(prob.length);
+        return rnd.nextDouble() < prob[i] ? i : alias[i];
+    }
+
+    /** Poids de Zipf : 1/(k+1)^skew pour k = 0..n-1 (skew = 0 : uniforme). */
+    static double[] zipfWeights(int n, double skew) {
+        if (!(skew >= 0)) throw new IllegalArgumentException("skew must be >= 0");
+        double[] w = new double[n];
+        for (int k = 0; k < n; k++) w[k] = Math.pow(k + 1, -skew);
+        return w;
+    }
 }
 
 
@@ -49,12 +170,18 @@ package com.acme.datagen;
 
 import com.mifmif.common.regex.Generex;
 
+import java.util.SplittableRandom;
+
 /**
  * Génère des chaînes conformes à une regex.
  * Utilise Generex (rapide). Seedable via setSeed pour reproductibilité.
+ * split() crée un nouveau Generex avec une graine tirée d'un SplittableRandom dédié.
+ * Les builders DataGenerators utilisent désormais AutomatonRegexGenerator (tirage uniforme, DFA compilé une fois).
  */
 public final class RegexStringGenerator implements ValueGenerator<String> {
+    private final String regex;
     private final Generex generex;
+    private final SplittableRandom seeds;       // graines des sous-générateurs
 
     /**
      * @param regex ex: "[A-Z]{2}[0-9]{4}"
@@ -64,16 +191,26 @@ public final class RegexStringGenerator implements ValueGenerator<String> {
         if (regex == null || regex.isBlank()) {
             throw new IllegalArgumentException("regex must not be null/blank");
         }
+        this.regex = regex;
         this.generex = new Generex(regex);
         if (seed != null) {
             this.generex.setSeed(seed);
         }
+        this.seeds = (seed == null) ? new SplittableRandom() : new SplittableRandom(seed);
     }
 
     @Override
     public String next() {
         return generex.random();
     }
+
+    @Override
+    public boolean isSplittable() { return true; }
+
+    @Override
+    public RegexStringGenerator split(long count) {
+        return new RegexStringGenerator(regex, seeds.nextLong());
+    }
 }
 
 
@@ -83,31 +220,57 @@ package com.acme.datagen;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.SplittableRandom;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Génère des valeurs piochées dans une liste fournie.
  * - RANDOM : tirage aléatoire indépendant
  * - CYCLIC : parcours circulaire
  * - SHUFFLE_NO_REPEAT : mélange la liste puis la parcourt, et remélange quand on atteint la fin
+ * - WEIGHTED / ZIPF : tirage pondéré via une table d'alias construite une fois (O(1) par tirage)
+ * fill()/nextBatch() : CYCLIC copie des plages entières, RANDOM tire les index en boucle serrée.
+ * split() partage la liste immuable mais donne au sous-générateur son propre RNG (rnd.split()),
+ * son propre buffer de shuffle et, en CYCLIC, la tranche d'index suivante (split(count) seulement).
+ * CYCLIC avance une BlockSequence (long, pas de débordement) : ordonnée par défaut, ou fournie par l'appelant
+ * pour partager / reprendre le curseur ; next() est sûr entre threads.
  */
 public final class ListPickerGenerator<T> implements ValueGenerator<T> {
 
     private final List<T> items;                // copie immuable
+    private final Object[] array;               // mêmes éléments, pour les copies en bloc
     private final SelectionMode mode;
     private final SplittableRandom rnd;         // rapide, seedable
-    private final AtomicInteger idx = new AtomicInteger(0);
+    private final BlockSequence seq;            // CYCLIC
+    private final AliasTable alias;             // WEIGHTED / ZIPF, sinon null
 
     // pour SHUFFLE_NO_REPEAT
     private List<T> buffer;
     private int bufIndex = 0;
 
     public ListPickerGenerator(List<T> items, SelectionMode mode, Long seed) {
+        this(items, mode, null, seed);
+    }
+
+    /**
+     * @param weights poids par élément : obligatoires en WEIGHTED ; en ZIPF, null = skew 1.0 ; ignorés sinon
+     */
+    public ListPickerGenerator(List<T> items, SelectionMode mode, double[] weights, Long seed) {
+        this(items, mode, weights, seed, null);
+    }
+
+    /**
+     * @param sequence curseur CYCLIC (partagé, reprise sur checkpoint) ; null = séquence ordonnée propre depuis 0
+     */
+    public ListPickerGenerator(List<T> items, SelectionMode mode, double[] weights, Long seed, BlockSequence sequence) {
         if (items == null || items.isEmpty()) throw new IllegalArgumentException("items must not be empty");
         this.items = List.copyOf(items);
+        this.array = this.items.toArray();
         this.mode = (mode == null) ? SelectionMode.RANDOM : mode;
         this.rnd = (seed == null) ? new SplittableRandom() : new SplittableRandom(seed);
+        this.alias = aliasFor(this.mode, weights, this.items.size());
+        this.seq = (sequence == null) ? BlockSequence.ordered(0) : sequence;
         if (this.mode == SelectionMode.SHUFFLE_NO_REPEAT) {
             this.buffer = new ArrayList<>(this.items);
             Collections.shuffle(this.buffer, new java.util.Random(seed == null ? System.nanoTime() : seed));
@@ -115,11 +278,40 @@ public final class ListPickerGenerator<T> implements ValueGenerator<T> {
         }
     }
 
+    /** Sous-générateur (split) : liste partagée, état propre. */
+    private ListPickerGenerator(List<T> items, Object[] array, SelectionMode mode, AliasTable alias,
+                                SplittableRandom rnd, long start) {
+        this.items = items;
+        this.array = array;
+        this.mode = mode;
+        this.alias = alias;
+        this.rnd = rnd;
+        this.seq = BlockSequence.ordered(start);
+        if (mode == SelectionMode.SHUFFLE_NO_REPEAT) {
+            this.buffer = new ArrayList<>(items);
+            Collections.shuffle(this.buffer, new java.util.Random(rnd.nextLong()));
+        }
+    }
+
+    private static AliasTable aliasFor(SelectionMode mode, double[] weights, int size) {
+        return switch (mode) {
+            case WEIGHTED -> {
+                if (weights == null || weights.length != size) {
+                    throw new IllegalArgumentException("WEIGHTED requires one weight per item");
+                }
+                yield new AliasTable(weights);
+            }
+            case ZIPF -> new AliasTable(weights != null ? weights : AliasTable.zipfWeights(size, 1.0));
+            default -> null;
+        };
+    }
+
     @Override
     public T next() {
         return switch (mode) {
             case RANDOM -> items.get(rnd.nextInt(items.size()));
-            case CYCLIC -> items.get(Math.floorMod(idx.getAndIncrement(), items.size()));
+            case WEIGHTED, ZIPF -> items.get(alias.sample(rnd));
+            case CYCLIC -> items.get(Math.floorMod(seq.next(), items.size()));
             case SHUFFLE_NO_REPEAT -> {
                 if (bufIndex >= buffer.size()) {
                     // reshuffle nouveau cycle
@@ -130,28 +322,203 @@ public final class ListPickerGenerator<T> implements ValueGenerator<T> {
             }
         };
     }
+
+    @Override
+    public boolean isSplittable() { return true; }
+
+    /**
+     * Sans taille, un sous-générateur CYCLIC repartirait de la position du parent sans la réserver :
+     * les deux émettraient la même séquence. CYCLIC exige donc split(count).
+     */
+    @Override
+    public ListPickerGenerator<T> split() {
+        if (mode == SelectionMode.CYCLIC) {
+            throw new UnsupportedOperationException("CYCLIC split requires a count: use split(count)");
+        }
+        return split(0);
+    }
+
+    @Override
+    public ListPickerGenerator<T> split(long count) {
+        if (mode == SelectionMode.CYCLIC && count <= 0) {
+            throw new IllegalArgumentException("CYCLIC split count must be > 0");
+        }
+        // CYCLIC : le sous-générateur prend les `count` positions suivantes, le parent les saute
+        long start = (mode == SelectionMode.CYCLIC) ? Math.floorMod(seq.take(count), items.size()) : 0;
+        return new ListPickerGenerator<>(items, array, mode, alias, rnd.split(), start);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void fill(T[] dst, int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        switch (mode) {
+            case RANDOM -> {
+                int size = array.length;
+                for (int i = off, end = off + len; i < end; i++) dst[i] = (T) array[rnd.nextInt(size)];
+            }
+            case WEIGHTED, ZIPF -> {
+                for (int i = off, end = off + len; i < end; i++) dst[i] = (T) array[alias.sample(rnd)];
+            }
+            case CYCLIC -> {
+                int pos = Math.floorMod(seq.take(len), array.length);
+                for (int i = off, left = len; left > 0; ) {
+                    int run = Math.min(left, array.length - pos);
+                    System.arraycopy(array, pos, dst, i, run);
+                    i += run;
+                    left -= run;
+                    pos = 0;
+                }
+            }
+            case SHUFFLE_NO_REPEAT -> {
+                for (int i = off, end = off + len; i < end; i++) dst[i] = next();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void nextBatch(int n, Consumer<? super T> sink) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        switch (mode) {
+            case RANDOM -> {
+                int size = array.length;
+                for (int i = 0; i < n; i++) sink.accept((T) array[rnd.nextInt(size)]);
+            }
+            case WEIGHTED, ZIPF -> {
+                for (int i = 0; i < n; i++) sink.accept((T) array[alias.sample(rnd)]);
+            }
+            case CYCLIC -> {
+                int pos = Math.floorMod(seq.take(n), array.length);
+                for (int i = 0; i < n; i++) {
+                    sink.accept((T) array[pos]);
+                    if (++pos == array.length) pos = 0;
+                }
+            }
+            case SHUFFLE_NO_REPEAT -> {
+                for (int i = 0; i < n; i++) sink.accept(next());
+            }
+        }
+    }
 }
 
 
 package com.acme.datagen;
 
-import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteur long partagé (index round-robin, curseur CYCLIC) : next() et take() servent les index dans
+ * l'ordre des appels, un getAndAdd chacun. blockSize est la taille des blocs que les portées de génération
+ * réservent pour tirer sans toucher au compteur (GenerationStream du job : un bloc par worker, consommé par
+ * le code qui l'a réservé) ; advanceTo() y fait suivre la séquence une fois par bloc.
+ * position() est le point de reprise (aucun index >= position() n'a été servi) ; restore() y repart.
+ * restore() est prévu hors génération (reprise, remise à zéro).
+ */
+public final class BlockSequence {
+    private final AtomicLong next;
+    private final int blockSize;
+
+    public BlockSequence(long start, int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("blockSize must be >= 1");
+        this.next = new AtomicLong(start);
+        this.blockSize = blockSize;
+    }
+
+    /** Séquence sans bloc réservé par les portées : tout tirage passe par le compteur. */
+    public static BlockSequence ordered(long start) { return new BlockSequence(start, 1); }
+
+    public long next() { return next.getAndIncrement(); }
+
+    /** Réserve n index contigus et renvoie le premier. */
+    public long take(long n) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        return next.getAndAdd(n);
+    }
+
+    /** Fait passer la position au-delà d'un bloc réservé hors du compteur (jamais en arrière). */
+    public void advanceTo(long position) {
+        next.accumulateAndGet(position, Math::max);
+    }
+
+    /** Prochain index jamais réservé : position à sauvegarder pour une reprise. */
+    public long position() { return next.get(); }
+
+    public void restore(long position) { next.set(position); }
+
+    public int blockSize() { return blockSize; }
+}
+
+
+package com.acme.datagen;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Séquences nommées partagées par plusieurs générateurs (un compteur par dataset, par liste CYCLIC…),
+ * toutes avec le même blockSize (blocs réservés par les GenerationStream du job). positions()/restore() servent
+ * au checkpoint et à la reprise d'un job.
+ * Les appelants fréquents gardent la BlockSequence obtenue plutôt que de la rechercher à chaque tirage.
+ */
+public final class SequenceRegistry {
+    private final Map<String, BlockSequence> sequences = new ConcurrentHashMap<>();
+    private final int blockSize;
+
+    public SequenceRegistry(int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("blockSize must be >= 1");
+        this.blockSize = blockSize;
+    }
+
+    public BlockSequence sequence(String name) {
+        BlockSequence s = sequences.get(name);
+        return s != null ? s : sequences.computeIfAbsent(name, n -> new BlockSequence(0, blockSize));
+    }
+
+    /** Instantané trié nom → position. */
+    public Map<String, Long> positions() {
+        Map<String, Long> out = new TreeMap<>();
+        sequences.forEach((name, s) -> out.put(name, s.position()));
+        return out;
+    }
+
+    /** Remet chaque séquence à la position sauvegardée ; celles absentes de `positions` repartent de 0. */
+    public void restore(Map<String, Long> positions) {
+        sequences.forEach((name, s) -> s.restore(positions.getOrDefault(name, 0L)));
+        positions.forEach((name, p) -> sequences.computeIfAbsent(name, n -> new BlockSequence(p, blockSize)));
+    }
+
+    public int blockSize() { return blockSize; }
+}
+
+
+package com.acme.datagen;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /**
- * Garantit des valeurs uniques (jusqu'à épuisement de l'espace).
+ * Garantit des valeurs uniques (jusqu'à épuisement de l'espace) par rejet des valeurs déjà vues.
  * Si l'unicité devient impossible, lève IllegalStateException après maxAttempts tentatives.
+ * La mémoire des valeurs vues est un SeenSet (heap exact, empreintes hors heap, ou Bloom).
+ * Les sous-générateurs (split) partagent le même SeenSet : l'unicité reste globale,
+ * mais en parallèle l'ordre des rejets (donc la sortie exacte) dépend de l'ordonnancement.
+ * Pour une unicité sans ensemble ni rejet sur un espace indexable, voir PermutationUniqueGenerator.
  */
 final class UniqueGenerator<T> implements ValueGenerator<T> {
     private final ValueGenerator<T> delegate;
-    private final Set<T> seen;
+    private final SeenSet<T> seen;
     private final int maxAttempts;
 
     UniqueGenerator(ValueGenerator<T> delegate, int expectedCardinality, int maxAttempts) {
+        this(delegate, SeenSet.heap(expectedCardinality), maxAttempts);
+    }
+
+    UniqueGenerator(ValueGenerator<T> delegate, SeenSet<T> seen, int maxAttempts) {
         this.delegate = Objects.requireNonNull(delegate);
-        if (expectedCardinality <= 0) expectedCardinality = 16;
-        this.seen = new HashSet<>(expectedCardinality);
+        this.seen = seen;
         this.maxAttempts = Math.max(1, maxAttempts);
     }
 
@@ -163,128 +530,1557 @@ final class UniqueGenerator<T> implements ValueGenerator<T> {
         }
         throw new IllegalStateException("Unable to produce a new unique value after " + maxAttempts + " attempts");
     }
+
+    @Override
+    public boolean isSplittable() { return delegate.isSplittable(); }
+
+    @Override
+    public UniqueGenerator<T> split(long count) {
+        return new UniqueGenerator<>(delegate.split(count), seen, maxAttempts);
+    }
+
+    @Override
+    public List<ValueGenerator<T>> splitInto(int parts) {
+        List<ValueGenerator<T>> out = new ArrayList<>(parts);
+        for (ValueGenerator<T> d : delegate.splitInto(parts)) out.add(new UniqueGenerator<>(d, seen, maxAttempts));
+        return out;
+    }
 }
 
 
 package com.acme.datagen;
 
-import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
-/** Usines statiques et builder fluide. */
-public final class DataGenerators {
-    private DataGenerators() {}
+/**
+ * Spliterator fini adossé à un ValueGenerator (utilisé par stream(n)).
+ * trySplit détache la tranche préfixe, alignée sur BLOCK, avec generator.split(taille) :
+ * chaque tranche consomme son propre générateur, donc aucun verrou ni état partagé en parallèle.
+ * Résultat déterministe pour une graine et un découpage donnés.
+ */
+final class GeneratorSpliterator<T> implements Spliterator<T> {
+    static final int BLOCK = 1024;
 
-    public static ValueGenerator<String> ofRegex(String regex) {
-        return new RegexStringGenerator(regex, null);
-    }
-    public static ValueGenerator<String> ofRegex(String regex, long seed) {
-        return new RegexStringGenerator(regex, seed);
+    private final ValueGenerator<T> generator;
+    private long remaining;
+
+    GeneratorSpliterator(ValueGenerator<T> generator, long size) {
+        this.generator = generator;
+        this.remaining = size;
     }
 
-    public static <T> ValueGenerator<T> ofList(List<T> items, SelectionMode mode) {
-        return new ListPickerGenerator<>(items, mode, null);
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (remaining <= 0) return false;
+        remaining--;
+        action.accept(generator.next());
+        return true;
     }
-    public static <T> ValueGenerator<T> ofList(List<T> items, SelectionMode mode, long seed) {
-        return new ListPickerGenerator<>(items, mode, seed);
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        while (remaining > 0) {
+            int n = (int) Math.min(remaining, Integer.MAX_VALUE);
+            remaining -= n;
+            generator.nextBatch(n, action);
+        }
     }
 
-    public static <T> ValueGenerator<T> unique(ValueGenerator<T> delegate, int expectedCardinality) {
-        return ValueGenerator.unique(delegate, expectedCardinality, 10_000);
+    @Override
+    public Spliterator<T> trySplit() {
+        long prefix = prefix(remaining, generator);
+        if (prefix == 0) return null;
+        ValueGenerator<T> child = generator.split(prefix);
+        remaining -= prefix;
+        return new GeneratorSpliterator<>(child, prefix);
     }
 
-    // ---- Builder fluide ----
+    @Override
+    public long estimateSize() { return remaining; }
 
-    public static RegexBuilder regex(String pattern) { return new RegexBuilder(pattern); }
-    public static <T> ListBuilder<T> list(List<T> items) { return new ListBuilder<>(items); }
+    @Override
+    public int characteristics() { return ORDERED | SIZED | SUBSIZED; }
 
-    public static final class RegexBuilder {
-        private final String pattern;
-        private Long seed;
-        private boolean unique;
-        private int cardinality = 1024;
+    /** Taille de la tranche préfixe à détacher (0 = pas de découpage). */
+    static long prefix(long remaining, ValueGenerator<?> generator) {
+        if (remaining < 2L * BLOCK || !generator.isSplittable()) return 0;
+        return (remaining / 2) / BLOCK * BLOCK;
+    }
 
-        private RegexBuilder(String pattern) { this.pattern = pattern; }
+    // ---- Variantes primitives (sans boxing) ----
 
-        public RegexBuilder seed(long s) { this.seed = s; return this; }
-        public RegexBuilder unique(boolean u) { this.unique = u; return this; }
-        public RegexBuilder expectedCardinality(int c) { this.cardinality = c; return this; }
+    static final class Ints implements Spliterator.OfInt {
+        private final IntValueGenerator generator;
+        private long remaining;
 
-        public ValueGenerator<String> build() {
-            ValueGenerator<String> g = new RegexStringGenerator(pattern, seed);
-            return unique ? DataGenerators.unique(g, cardinality) : g;
+        Ints(IntValueGenerator generator, long size) { this.generator = generator; this.remaining = size; }
+
+        @Override public boolean tryAdvance(IntConsumer action) {
+            if (remaining <= 0) return false;
+            remaining--;
+            action.accept(generator.nextInt());
+            return true;
+        }
+        @Override public void forEachRemaining(IntConsumer action) {
+            for (; remaining > 0; remaining--) action.accept(generator.nextInt());
         }
+        @Override public Spliterator.OfInt trySplit() {
+            long prefix = prefix(remaining, generator);
+            if (prefix == 0) return null;
+            IntValueGenerator child = generator.split(prefix);
+            remaining -= prefix;
+            return new Ints(child, prefix);
+        }
+        @Override public long estimateSize() { return remaining; }
+        @Override public int characteristics() { return ORDERED | SIZED | SUBSIZED | NONNULL; }
     }
 
-    public static final class ListBuilder<T> {
-        private final List<T> items;
-        private SelectionMode mode = SelectionMode.RANDOM;
-        private Long seed;
-        private boolean unique;
-        private int cardinality = 1024;
-
-        private ListBuilder(List<T> items) { this.items = items; }
+    static final class Longs implements Spliterator.OfLong {
+        private final LongValueGenerator generator;
+        private long remaining;
 
-        public ListBuilder<T> mode(SelectionMode m) { this.mode = m; return this; }
-        public ListBuilder<T> seed(long s) { this.seed = s; return this; }
-        public ListBuilder<T> unique(boolean u) { this.unique = u; return this; }
-        public ListBuilder<T> expectedCardinality(int c) { this.cardinality = c; return this; }
+        Longs(LongValueGenerator generator, long size) { this.generator = generator; this.remaining = size; }
 
-        public ValueGenerator<T> build() {
-            ValueGenerator<T> g = new ListPickerGenerator<>(items, mode, seed);
-            return unique ? DataGenerators.unique(g, cardinality) : g;
+        @Override public boolean tryAdvance(LongConsumer action) {
+            if (remaining <= 0) return false;
+            remaining--;
+            action.accept(generator.nextLong());
+            return true;
         }
+        @Override public void forEachRemaining(LongConsumer action) {
+            for (; remaining > 0; remaining--) action.accept(generator.nextLong());
+        }
+        @Override public Spliterator.OfLong trySplit() {
+            long prefix = prefix(remaining, generator);
+            if (prefix == 0) return null;
+            LongValueGenerator child = generator.split(prefix);
+            remaining -= prefix;
+            return new Longs(child, prefix);
+        }
+        @Override public long estimateSize() { return remaining; }
+        @Override public int characteristics() { return ORDERED | SIZED | SUBSIZED | NONNULL; }
     }
-}
 
+    static final class Doubles implements Spliterator.OfDouble {
+        private final DoubleValueGenerator generator;
+        private long remaining;
 
-<dependency>
-  <groupId>com.github.mifmif</groupId>
-  <artifactId>generex</artifactId>
-  <version>1.0.2</version>
-</dependency>
+        Doubles(DoubleValueGenerator generator, long size) { this.generator = generator; this.remaining = size; }
 
+        @Override public boolean tryAdvance(DoubleConsumer action) {
+            if (remaining <= 0) return false;
+            remaining--;
+            action.accept(generator.nextDouble());
+            return true;
+        }
+        @Override public void forEachRemaining(DoubleConsumer action) {
+            for (; remaining > 0; remaining--) action.accept(generator.nextDouble());
+        }
+        @Override public Spliterator.OfDouble trySplit() {
+            long prefix = prefix(remaining, generator);
+            if (prefix == 0) return null;
+            DoubleValueGenerator child = generator.split(prefix);
+            remaining -= prefix;
+            return new Doubles(child, prefix);
+        }
+        @Override public long estimateSize() { return remaining; }
+        @Override public int characteristics() { return ORDERED | SIZED | SUBSIZED | NONNULL; }
+    }
+}
 
-import com.acme.datagen.*;
 
-import java.util.List;
+package com.acme.datagen;
 
-public class Demo {
-    public static void main(String[] args) {
-        // 1) Regex (email-like simple) — seedé pour reproductibilité
-        ValueGenerator<String> emails = DataGenerators
-                .regex("[a-z]{5,10}\\.[a-z]{5,10}@example\\.com")
-                .seed(42L)
-                .unique(true)                 // refuse doublons
-                .expectedCardinality(10_000)  // taille attendue
-                .build();
+/** Loi de tirage des générateurs numériques primitifs. */
+public enum Distribution {
+    /** Uniforme sur [min, max] (max exclu pour les doubles). */
+    UNIFORM,
+    /** Normale (moyenne, écart-type), tronquée aux bornes. */
+    NORMAL,
+    /** Log-normale (mu, sigma du log), tronquée aux bornes — montants, tailles... */
+    LOG_NORMAL
+}
 
-        System.out.println(emails.take(5));
 
-        // 2) Liste — mode CYCLIC (utile pour ID prédictible ou jeux maîtrisés)
-        ValueGenerator<String> country = DataGenerators
-                .list(List.of("FR", "DE", "NG"))
-                .mode(SelectionMode.CYCLIC)
-                .build();
 
-        System.out.println(country.take(7)); // [FR, DE, NG, FR, DE, NG, FR]
+package com.acme.datagen;
 
-        // 3) Liste — mode SHUFFLE_NO_REPEAT (pas de doublon dans un cycle)
-        ValueGenerator<String> names = DataGenerators
-                .list(List.of("Alice","Bob","Chloé","David"))
-                .mode(SelectionMode.SHUFFLE_NO_REPEAT)
-                .seed(2025L)
-                .build();
+import java.util.SplittableRandom;
 
-        System.out.println(names.take(6)); // ex: [Chloé, Bob, Alice, David, ...re-shuffle..., Chloé]
+/**
+ * Tirage numérique commun aux générateurs int/long/double (pas de boxing).
+ * Les lois non uniformes sont tronquées aux bornes : nouveau tirage (au plus MAX_RETRIES), puis écrêtage.
+ */
+final class NumericSampler {
+    private static final int MAX_RETRIES = 16;
 
-        // 4) Unicité forcée sur une liste (avec tirage RANDOM)
-        ValueGenerator<String> uniqueNames = DataGenerators.unique(
-                DataGenerators.ofList(List.of("A","B","C","D"), SelectionMode.RANDOM, 7L),
-                4 // cardinalité
-        );
-        System.out.println(uniqueNames.take(4)); // 4 uniques, sinon IllegalStateException
+    private final Distribution dist;
+    private final double a, b;                  // (moyenne, écart-type) ou (mu, sigma)
+    private final long minL, maxL;              // bornes entières (incluses)
+    private final double minD, maxD;            // bornes réelles
+    private final SplittableRandom rnd;
+
+    NumericSampler(Distribution dist, double a, double b, long minL, long maxL, double minD, double maxD, Long seed) {
+        this(dist, a, b, minL, maxL, minD, maxD, seed == null ? new SplittableRandom() : new SplittableRandom(seed));
     }
-}
 
+    private NumericSampler(Distribution dist, double a, double b, long minL, long maxL, double minD, double maxD,
+                           SplittableRandom rnd) {
+        if (minL > maxL || !(minD <= maxD)) throw new IllegalArgumentException("min must be <= max");
+        if ((dist == Distribution.NORMAL || dist == Distribution.LOG_NORMAL) && !(b > 0)) {
+            throw new IllegalArgumentException("standard deviation / sigma must be > 0");
+        }
+        this.dist = (dist == null) ? Distribution.UNIFORM : dist;
+        this.a = a; this.b = b;
+        this.minL = minL; this.maxL = maxL;
+        this.minD = minD; this.maxD = maxD;
+        this.rnd = rnd;
+    }
+
+    long nextLong() {
+        if (dist == Distribution.UNIFORM) {
+            if (maxL < Long.MAX_VALUE) return rnd.nextLong(minL, maxL + 1);
+            if (minL > Long.MIN_VALUE) return rnd.nextLong(minL - 1, maxL) + 1;
+            return rnd.nextLong();
+        }
+        for (int i = 0; i < MAX_RETRIES; i++) {
+            double v = Math.rint(continuous());
+            if (v >= minL && v <= maxL) return (long) v;
+        }
+        return Math.max(minL, Math.min(maxL, (long) Math.rint(continuous())));
+    }
+
+    double nextDouble() {
+        if (dist == Distribution.UNIFORM) {
+            return (minD < maxD) ? rnd.nextDouble(minD, maxD) : minD;
+        }
+        for (int i = 0; i < MAX_RETRIES; i++) {
+            double v = continuous();
+            if (v >= minD && v <= maxD) return v;
+        }
+        return Math.max(minD, Math.min(maxD, continuous()));
+    }
+
+    /** Sous-échantillonneur indépendant (graine dérivée). */
+    NumericSampler split() {
+        return new NumericSampler(dist, a, b, minL, maxL, minD, maxD, rnd.split());
+    }
+
+    private double continuous() {
+        double g = a + b * rnd.nextGaussian();
+        return (dist == Distribution.LOG_NORMAL) ? Math.exp(g) : g;
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Générateur d'int sans boxing (quantités, compteurs...).
+ * next() reste disponible via ValueGenerator<Integer> mais boxe : préférer nextInt(), fill() ou intStream().
+ */
+public interface IntValueGenerator extends ValueGenerator<Integer> {
+
+    int nextInt();
+
+    @Override default Integer next() { return nextInt(); }
+
+    default void fill(int[] dst) { fill(dst, 0, dst.length); }
+
+    default void fill(int[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) dst[i] = nextInt();
+    }
+
+    /** Flux fini de N int, parallélisable si le générateur est splittable. */
+    default IntStream intStream(long n) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        return StreamSupport.intStream(new GeneratorSpliterator.Ints(this, n), false);
+    }
+
+    @Override default IntValueGenerator split() { return split(0); }
+
+    @Override default IntValueGenerator split(long count) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not splittable");
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/** Générateur de long sans boxing (identifiants, compteurs, montants en centimes...). */
+public interface LongValueGenerator extends ValueGenerator<Long> {
+
+    long nextLong();
+
+    @Override default Long next() { return nextLong(); }
+
+    default void fill(long[] dst) { fill(dst, 0, dst.length); }
+
+    default void fill(long[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) dst[i] = nextLong();
+    }
+
+    /** Flux fini de N long, parallélisable si le générateur est splittable. */
+    default LongStream longStream(long n) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        return StreamSupport.longStream(new GeneratorSpliterator.Longs(this, n), false);
+    }
+
+    @Override default LongValueGenerator split() { return split(0); }
+
+    @Override default LongValueGenerator split(long count) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not splittable");
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/** Générateur de double sans boxing (montants, taux...). */
+public interface DoubleValueGenerator extends ValueGenerator<Double> {
+
+    double nextDouble();
+
+    @Override default Double next() { return nextDouble(); }
+
+    default void fill(double[] dst) { fill(dst, 0, dst.length); }
+
+    default void fill(double[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) dst[i] = nextDouble();
+    }
+
+    /** Flux fini de N double, parallélisable si le générateur est splittable. */
+    default DoubleStream doubleStream(long n) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        return StreamSupport.doubleStream(new GeneratorSpliterator.Doubles(this, n), false);
+    }
+
+    @Override default DoubleValueGenerator split() { return split(0); }
+
+    @Override default DoubleValueGenerator split(long count) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not splittable");
+    }
+}
+
+
+
+package com.acme.datagen;
+
+/** Implémentations primitives adossées à un NumericSampler (construites via DataGenerators). */
+final class SampledGenerators {
+    private SampledGenerators() {}
+
+    static final class Ints implements IntValueGenerator {
+        private final NumericSampler sampler;
+        Ints(NumericSampler sampler) { this.sampler = sampler; }
+
+        @Override public int nextInt() { return (int) sampler.nextLong(); }
+        @Override public boolean isSplittable() { return true; }
+        @Override public Ints split(long count) { return new Ints(sampler.split()); }
+    }
+
+    static final class Longs implements LongValueGenerator {
+        private final NumericSampler sampler;
+        Longs(NumericSampler sampler) { this.sampler = sampler; }
+
+        @Override public long nextLong() { return sampler.nextLong(); }
+        @Override public boolean isSplittable() { return true; }
+        @Override public Longs split(long count) { return new Longs(sampler.split()); }
+    }
+
+    static final class Doubles implements DoubleValueGenerator {
+        private final NumericSampler sampler;
+        Doubles(NumericSampler sampler) { this.sampler = sampler; }
+
+        @Override public double nextDouble() { return sampler.nextDouble(); }
+        @Override public boolean isSplittable() { return true; }
+        @Override public Doubles split(long count) { return new Doubles(sampler.split()); }
+    }
+}
+
+
+
+package com.acme.datagen;
+
+/** Stratégie d'unicité des générateurs (builders DataGenerators). */
+public enum UniqueMode {
+    /** Ensemble en heap des valeurs émises + rejet des doublons (exact, mémoire proportionnelle). */
+    SET,
+    /** Permutation pseudo-aléatoire de l'espace d'index (listes, regex finies) : aucun ensemble, aucun rejet. */
+    PERMUTATION,
+    /** Empreintes 64 bits dans une table hors heap (8 octets par case) ; une collision d'empreinte fait sauter une valeur, jamais un doublon. */
+    OFF_HEAP,
+    /** Filtre de Bloom hors heap (~10 bits/valeur à 1 %) ; les faux positifs font sauter des valeurs, jamais un doublon. */
+    BLOOM
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.List;
+
+/**
+ * Espace fini de valeurs adressable par index : base des modes uniques sans ensemble (PERMUTATION).
+ * at() doit être sans état (appelable depuis plusieurs threads).
+ */
+public interface IndexedSpace<T> {
+
+    long size();
+
+    /** Valeur d'index {@code index} (0 <= index < size()). */
+    T at(long index);
+
+    static <T> IndexedSpace<T> ofList(List<T> items) {
+        if (items == null || items.isEmpty()) throw new IllegalArgumentException("items must not be empty");
+        List<T> copy = List.copyOf(items);
+        return new IndexedSpace<>() {
+            @Override public long size() { return copy.size(); }
+            @Override public T at(long index) { return copy.get((int) index); }
+        };
+    }
+
+    /** Énumération des chaînes d'une regex (index -> chaîne sur le DFA compilé ; bornée si le langage est infini). */
+    static IndexedSpace<String> ofRegex(String regex) {
+        CompiledRegex compiled = CompiledRegex.compile(regex);
+        compiled.size();   // échoue tôt si le langage dépasse 2^63
+        return compiled;
+    }
+}
+
+
+
+package com.acme.datagen;
+
+/**
+ * Bijection pseudo-aléatoire sur [0, n), paramétrée par une graine.
+ * Réseau de Feistel équilibré sur 2*half bits (>= n) + "cycle walking" : on réapplique
+ * tant que le résultat sort de [0, n) (moins de 4 itérations en moyenne). Sans état, thread-safe.
+ */
+final class FeistelPermutation {
+    private static final int ROUNDS = 6;
+
+    private final long n;
+    private final int half;
+    private final long mask;
+    private final long[] keys = new long[ROUNDS];
+
+    FeistelPermutation(long n, long seed) {
+        if (n <= 0) throw new IllegalArgumentException("n must be > 0");
+        // 2*half bits doivent tenir dans un long positif : au-delà de 2^62, (l << half) | r déborde
+        if (n > 1L << 62) throw new IllegalArgumentException("n must be <= 2^62: " + n);
+        this.n = n;
+        int bits = 64 - Long.numberOfLeadingZeros(n - 1);
+        this.half = Math.max(1, (bits + 1) / 2);
+        this.mask = (1L << half) - 1;
+        long k = seed;
+        for (int i = 0; i < ROUNDS; i++) keys[i] = k = Hashing.mix64(k + 0x9E3779B97F4A7C15L);
+    }
+
+    long apply(long x) {
+        if (x < 0 || x >= n) throw new IndexOutOfBoundsException(x);
+        do {
+            x = encrypt(x);
+        } while (x >= n);
+        return x;
+    }
+
+    private long encrypt(long x) {
+        long l = x >>> half, r = x & mask;
+        for (long key : keys) {
+            long t = l ^ (Hashing.mix64(r ^ key) & mask);
+            l = r;
+            r = t;
+        }
+        return (l << half) | r;
+    }
+}
+
+
+
+package com.acme.datagen;
+
+/** Hachage 64 bits (mix de SplittableRandom) et empreintes de valeurs pour les ensembles compacts. */
+final class Hashing {
+    private Hashing() {}
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Empreinte 64 bits : exacte pour les entiers, FNV-1a + mix pour les chaînes, hashCode() mixé sinon. */
+    static long fingerprint(Object v) {
+        if (v == null) return 0;
+        if (v instanceof CharSequence cs) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < cs.length(); i++) h = (h ^ cs.charAt(i)) * 0x100000001B3L;
+            return mix64(h);
+        }
+        if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            return mix64(((Number) v).longValue());
+        }
+        if (v instanceof Double d) return mix64(Double.doubleToLongBits(d));
+        return mix64(v.hashCode());
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unicité sans ensemble : la i-ème valeur est space.at(perm(i)), perm étant une bijection de Feistel.
+ * Mémoire constante, aucun rejet, déterministe pour une graine donnée (y compris en parallèle :
+ * split(count) réserve les `count` rangs suivants). IllegalStateException quand l'espace est épuisé.
+ */
+final class PermutationUniqueGenerator<T> implements ValueGenerator<T> {
+    private final IndexedSpace<T> space;
+    private final FeistelPermutation perm;
+    private final AtomicLong position;
+    private final long end;
+
+    PermutationUniqueGenerator(IndexedSpace<T> space, long seed) {
+        this(space, new FeistelPermutation(space.size(), seed), 0, space.size());
+    }
+
+    private PermutationUniqueGenerator(IndexedSpace<T> space, FeistelPermutation perm, long start, long end) {
+        this.space = space;
+        this.perm = perm;
+        this.position = new AtomicLong(start);
+        this.end = end;
+    }
+
+    @Override
+    public T next() {
+        long i = position.getAndIncrement();
+        if (i >= end) throw new IllegalStateException("Unique space exhausted after " + space.size() + " values");
+        return space.at(perm.apply(i));
+    }
+
+    /** Réserve les len rangs d'un coup (un seul CAS par lot, sans concurrence). */
+    @Override
+    public void fill(T[] dst, int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        long first;
+        do {                                    // réserve seulement si le lot tient : rien à annuler ensuite
+            first = position.get();
+            if (first > end - len) throw new IllegalStateException("Unique space exhausted after " + space.size() + " values");
+        } while (!position.compareAndSet(first, first + len));
+        for (int i = 0; i < len; i++) dst[off + i] = space.at(perm.apply(first + i));
+    }
+
+    @Override
+    public boolean isSplittable() { return true; }
+
+    /** Détache la première moitié des rangs restants ; ce générateur continue après elle. */
+    @Override
+    public PermutationUniqueGenerator<T> split() {
+        return split(Math.max(0, end - position.get()) / 2);
+    }
+
+    @Override
+    public PermutationUniqueGenerator<T> split(long count) {
+        long start = position.getAndAdd(count);
+        return new PermutationUniqueGenerator<>(space, perm, start, Math.min(end, start + count));
+    }
+
+    /** Rangs restants répartis à parts égales (le reste de la division va à la dernière partie). */
+    @Override
+    public List<ValueGenerator<T>> splitInto(int parts) {
+        if (parts < 1) throw new IllegalArgumentException("parts must be >= 1");
+        long share = Math.max(0, end - position.get()) / parts;
+        List<ValueGenerator<T>> out = new ArrayList<>(parts);
+        for (int i = 0; i < parts - 1; i++) out.add(split(share));
+        out.add(split(Math.max(0, end - position.get())));
+        return out;
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mémoire des valeurs déjà émises pour UniqueGenerator.
+ * add() renvoie false si la valeur est (ou pourrait être) déjà vue : un faux positif fait seulement
+ * sauter une valeur, il ne produit jamais de doublon. null est une valeur comme une autre (vue une fois).
+ * Partagée par tous les sous-générateurs (split) : add() est sûr entre threads sans verrou global.
+ */
+interface SeenSet<T> {
+
+    boolean add(T value);
+
+    static <T> SeenSet<T> heap(int expectedCardinality) {
+        Object nullValue = new Object();         // ConcurrentHashMap refuse null
+        Set<Object> seen = ConcurrentHashMap.newKeySet(expectedCardinality <= 0 ? 16 : expectedCardinality);
+        return value -> seen.add(value == null ? nullValue : value);
+    }
+
+    static <T> SeenSet<T> offHeap(long expectedCardinality) {
+        return new OffHeapFingerprintSet<>(expectedCardinality);
+    }
+
+    static <T> SeenSet<T> bloom(long expectedCardinality, double falsePositiveRate) {
+        return new OffHeapBloomFilter<>(expectedCardinality, falsePositiveRate);
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table d'empreintes 64 bits hors heap (adressage ouvert, sondage linéaire), 8 octets par case.
+ * Découpée en STRIPES sous-tables indépendantes, choisies par les bits hauts de l'empreinte, chacune sous son
+ * propre verrou : les sous-générateurs parallèles ne se sérialisent que s'ils tombent sur la même sous-table
+ * (ReentrantLock : n'épingle pas les threads virtuels). Chaque sous-table est segmentée (2^24 cases par
+ * ByteBuffer direct) pour dépasser la limite de 2 Go d'un buffer, et doublée à 70 % de charge.
+ */
+final class OffHeapFingerprintSet<T> implements SeenSet<T> {
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private final Table[] tables = new Table[STRIPES];
+
+    OffHeapFingerprintSet(long expectedCardinality) {
+        for (int i = 0; i < STRIPES; i++) tables[i] = new Table(Math.max(1, expectedCardinality) / STRIPES);
+    }
+
+    @Override
+    public boolean add(T value) {
+        long fp = Hashing.fingerprint(value);
+        if (fp == 0) fp = 1;                     // 0 = case vide
+        return tables[(int) (Hashing.mix64(fp) >>> (64 - STRIPE_BITS))].add(fp);
+    }
+
+    private static final class Table {
+        private static final int SEG_BITS = 24;
+        private static final long SEG_MASK = (1L << SEG_BITS) - 1;
+        private static final double MAX_LOAD = 0.7;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private LongBuffer[] segments;
+        private long capacity;
+        private long size;
+
+        Table(long expectedCardinality) {
+            allocate(Long.highestOneBit(Math.max(16, (long) (expectedCardinality / MAX_LOAD)) - 1) << 1);
+        }
+
+        boolean add(long fp) {
+            lock.lock();
+            try {
+                if (!insert(fp)) return false;
+                if (++size > capacity * MAX_LOAD) grow();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean insert(long fp) {
+            long mask = capacity - 1;
+            for (long i = Hashing.mix64(fp) & mask; ; i = (i + 1) & mask) {
+                LongBuffer seg = segments[(int) (i >>> SEG_BITS)];
+                int off = (int) (i & SEG_MASK);
+                long cur = seg.get(off);
+                if (cur == 0) { seg.put(off, fp); return true; }
+                if (cur == fp) return false;
+            }
+        }
+
+        private void grow() {
+            LongBuffer[] old = segments;
+            allocate(capacity << 1);
+            for (LongBuffer seg : old) {
+                for (int i = 0; i < seg.capacity(); i++) {
+                    long fp = seg.get(i);
+                    if (fp != 0) insert(fp);
+                }
+            }
+        }
+
+        private void allocate(long slots) {
+            int count = (int) Math.max(1, slots >>> SEG_BITS);
+            int perSegment = (int) Math.min(slots, 1L << SEG_BITS);
+            segments = new LongBuffer[count];
+            for (int s = 0; s < count; s++) {
+                segments[s] = ByteBuffer.allocateDirect(perSegment * Long.BYTES).asLongBuffer();
+            }
+            capacity = slots;
+        }
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Filtre de Bloom hors heap (mode probabiliste de l'unicité) : m = -n.ln(p)/ln(2)² bits, k = m/n.ln(2) hachages
+ * (double hachage de l'empreinte). Taille fixée à la construction : au-delà de n, le taux de faux positifs monte.
+ * Les bits sont posés par CAS sur le mot ; seul un même ajout concurrent de la même valeur doit être exclu
+ * (les deux appels pourraient poser chacun un bit et répondre « nouveau ») : verrou par bande d'empreintes.
+ */
+final class OffHeapBloomFilter<T> implements SeenSet<T> {
+    private static final int SEG_BITS = 24;      // mots de 64 bits par segment
+    private static final long SEG_MASK = (1L << SEG_BITS) - 1;
+    private static final int STRIPE_BITS = 6;
+    private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer[] segments;
+    private final ReentrantLock[] stripes = new ReentrantLock[1 << STRIPE_BITS];
+    private final long bits;
+    private final int hashes;
+
+    OffHeapBloomFilter(long expectedCardinality, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) throw new IllegalArgumentException("falsePositiveRate must be in ]0,1[");
+        long n = Math.max(1, expectedCardinality);
+        long words = Math.max(1, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) / 64));
+        this.bits = words * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        int count = (int) ((words + SEG_MASK) >>> SEG_BITS);
+        this.segments = new ByteBuffer[count];
+        for (int s = 0; s < count; s++) {
+            long len = Math.min(1L << SEG_BITS, words - ((long) s << SEG_BITS));
+            // CAS sur un mot : accès aligné sur 8 octets obligatoire
+            segments[s] = ByteBuffer.allocateDirect((int) len * Long.BYTES + Long.BYTES - 1).alignedSlice(Long.BYTES);
+        }
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new ReentrantLock();
+    }
+
+    @Override
+    public boolean add(T value) {
+        long h1 = Hashing.fingerprint(value);
+        long h2 = Hashing.mix64(h1) | 1;
+        ReentrantLock stripe = stripes[(int) (h2 >>> (64 - STRIPE_BITS))];
+        stripe.lock();
+        try {
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                long word = bit >>> 6;
+                ByteBuffer seg = segments[(int) (word >>> SEG_BITS)];
+                int index = (int) (word & SEG_MASK) * Long.BYTES;
+                long m = 1L << (bit & 63);
+                for (long w = (long) WORD.getVolatile(seg, index); (w & m) == 0; w = (long) WORD.getVolatile(seg, index)) {
+                    if (WORD.compareAndSet(seg, index, w, w | m)) {
+                        added = true;
+                        break;
+                    }
+                }
+            }
+            return added;
+        } finally {
+            stripe.unlock();
+        }
+    }
+}
+
+
+
+<dependency>
+  <groupId>dk.brics.automaton</groupId>
+  <artifactId>automaton</artifactId>
+  <version>1.11-8</version>
+</dependency>
+
+
+package com.acme.datagen;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Regex compilée une fois en DFA minimal (dk.brics.automaton), avec, pour chaque état et chaque longueur
+ * restante k, le nombre de chaînes acceptées de longueur <= k.
+ * - sample() : tirage uniforme sur le langage (borné à maxLength si infini), O(longueur x transitions)
+ * - at(i) : i-ème chaîne du langage (ordre lexicographique par transitions), même coût
+ * - écriture directe dans un char[] fourni : aucune concaténation de String
+ * Immuable après compilation : partageable entre threads et sous-générateurs.
+ */
+public final class CompiledRegex implements IndexedSpace<String> {
+    /** Longueur max. retenue pour un langage infini ("[a-z]+", ".*"...). */
+    public static final int DEFAULT_MAX_LENGTH = 32;
+
+    private final String regex;
+    private final int maxLength;
+    private final int initial;
+    private final boolean[] accept;
+    private final int[] tStart;                 // transitions de l'état s : [tStart[s], tStart[s+1])
+    private final char[] tMin, tMax;
+    private final int[] tDest;
+    private final long[] counts;                // counts[s*(L+1)+k], saturé à Long.MAX_VALUE
+    private final double[] weights;             // idem en double (tirage sans débordement)
+
+    private CompiledRegex(String regex, Automaton a, int maxLength) {
+        this.regex = regex;
+        List<State> states = new ArrayList<>(a.getStates());
+        Map<State, Integer> ids = new HashMap<>();
+        for (State s : states) ids.put(s, ids.size());
+        int n = states.size();
+
+        this.accept = new boolean[n];
+        this.tStart = new int[n + 1];
+        List<Transition> all = new ArrayList<>();
+        for (int s = 0; s < n; s++) {
+            accept[s] = states.get(s).isAccept();
+            tStart[s] = all.size();
+            all.addAll(states.get(s).getSortedTransitions(false));
+        }
+        tStart[n] = all.size();
+        this.tMin = new char[all.size()];
+        this.tMax = new char[all.size()];
+        this.tDest = new int[all.size()];
+        for (int t = 0; t < all.size(); t++) {
+            tMin[t] = all.get(t).getMin();
+            tMax[t] = all.get(t).getMax();
+            tDest[t] = ids.get(all.get(t).getDest());
+        }
+        this.initial = ids.get(a.getInitialState());
+        this.maxLength = a.isFinite() ? longest(initial, new int[n]) : maxLength;
+
+        int L1 = this.maxLength + 1;
+        this.counts = new long[n * L1];
+        this.weights = new double[n * L1];
+        for (int k = 0; k <= this.maxLength; k++) {
+            for (int s = 0; s < n; s++) {
+                long c = accept[s] ? 1 : 0;
+                double w = c;
+                if (k > 0) {
+                    for (int t = tStart[s]; t < tStart[s + 1]; t++) {
+                        int width = tMax[t] - tMin[t] + 1;
+                        c = satAdd(c, satMul(width, counts[tDest[t] * L1 + k - 1]));
+                        w += width * weights[tDest[t] * L1 + k - 1];
+                    }
+                }
+                counts[s * L1 + k] = c;
+                weights[s * L1 + k] = w;
+            }
+        }
+        if (weights[initial * L1 + this.maxLength] == 0) {
+            throw new IllegalArgumentException("regex matches nothing within maxLength " + maxLength + ": " + regex);
+        }
+    }
+
+    public static CompiledRegex compile(String regex) {
+        return compile(regex, DEFAULT_MAX_LENGTH);
+    }
+
+    /** @param maxLength borne de longueur appliquée seulement si le langage est infini */
+    public static CompiledRegex compile(String regex, int maxLength) {
+        if (regex == null || regex.isBlank()) throw new IllegalArgumentException("regex must not be null/blank");
+        if (maxLength < 0) throw new IllegalArgumentException("maxLength must be >= 0");
+        Automaton a = new RegExp(toBrics(regex), RegExp.NONE).toAutomaton();
+        a.determinize();
+        a.minimize();
+        if (a.isEmpty()) throw new IllegalArgumentException("regex matches nothing: " + regex);
+        return new CompiledRegex(regex, a, maxLength);
+    }
+
+    public String regex() { return regex; }
+
+    /** Longueur max. d'une chaîne produite (taille de tampon suffisante pour sample/at). */
+    public int maxLength() { return maxLength; }
+
+    /** Nombre de chaînes du langage (borné) ; IllegalStateException au-delà de Long.MAX_VALUE - 1. */
+    @Override
+    public long size() {
+        long c = counts[initial * (maxLength + 1) + maxLength];
+        if (c == Long.MAX_VALUE) throw new IllegalStateException("regex language too large to index: " + regex);
+        return c;
+    }
+
+    @Override
+    public String at(long index) {
+        char[] buf = new char[maxLength];
+        return new String(buf, 0, at(index, buf, 0));
+    }
+
+    /** Écrit la chaîne d'index {@code index} dans dst à partir de off ; renvoie l'offset de fin. */
+    public int at(long index, char[] dst, int off) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        int L1 = maxLength + 1;
+        int s = initial, pos = off;
+        for (int k = maxLength; ; k--) {
+            if (accept[s]) {
+                if (index == 0) return pos;
+                index--;
+            }
+            for (int t = tStart[s]; t < tStart[s + 1]; t++) {
+                long c = counts[tDest[t] * L1 + k - 1];
+                if (c == 0) continue;
+                long block = satMul(tMax[t] - tMin[t] + 1, c);
+                if (index < block) {
+                    dst[pos++] = (char) (tMin[t] + index / c);
+                    index %= c;
+                    s = tDest[t];
+                    break;
+                }
+                index -= block;
+            }
+        }
+    }
+
+    /** Tirage uniforme d'une chaîne, écrite dans dst à partir de off ; renvoie l'offset de fin. */
+    public int sample(RandomGenerator rnd, char[] dst, int off) {
+        int L1 = maxLength + 1;
+        int s = initial, pos = off;
+        for (int k = maxLength; ; k--) {
+            double r = rnd.nextDouble() * weights[s * L1 + k];
+            if (accept[s]) {
+                if (r < 1 || k == 0) return pos;
+                r -= 1;
+            }
+            int chosen = -1;
+            double c = 0;
+            for (int t = tStart[s]; t < tStart[s + 1]; t++) {
+                double w = weights[tDest[t] * L1 + k - 1];
+                if (w == 0) continue;
+                chosen = t;
+                c = w;
+                double block = (tMax[t] - tMin[t] + 1) * w;
+                if (r < block) break;
+                r -= block;
+            }
+            int ch = (int) Math.min(tMax[chosen] - tMin[chosen], Math.max(0, (long) (r / c)));
+            dst[pos++] = (char) (tMin[chosen] + ch);
+            s = tDest[chosen];
+        }
+    }
+
+    // --------- Compilation ---------
+
+    /**
+     * Traduit une regex Java (sous-ensemble) vers la syntaxe brics, jeton par jeton : \\ reste un
+     * antislash littéral, \d \w \s (et négations) deviennent des classes, (?: devient (, les caractères
+     * spéciaux pour brics seulement (" < > @ # & ~) sont échappés ; ancres ^ et $ de bord retirées.
+     */
+    private static String toBrics(String regex) {
+        StringBuilder out = new StringBuilder(regex.length() + 16);
+        boolean inClass = false;
+        int end = regex.length();
+        int i = regex.startsWith("^") ? 1 : 0;
+        for (; i < end; i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= end) throw new IllegalArgumentException("trailing backslash in regex: " + regex);
+                char e = regex.charAt(++i);
+                out.append(inClass ? classEscape(e, regex) : escape(e));
+            } else if (c == '$' && i == end - 1 && !inClass) {
+                break;                                      // ancre de fin
+            } else if (c == '[' && !inClass) {
+                inClass = true;
+                out.append(c);
+                if (i + 1 < end && regex.charAt(i + 1) == '^') out.append(regex.charAt(++i));
+                if (i + 1 < end && regex.charAt(i + 1) == ']') { out.append("\\]"); i++; }   // ']' littéral en tête
+            } else if (c == ']' && inClass) {
+                inClass = false;
+                out.append(c);
+            } else if (c == '(' && !inClass && regex.startsWith("?:", i + 1)) {
+                out.append('(');
+                i += 2;
+            } else if ("\"<>@#&~".indexOf(c) >= 0) {
+                out.append('\\').append(c);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
 
+    private static String escape(char e) {
+        return switch (e) {
+            case 'd' -> "[0-9]";
+            case 'D' -> "[^0-9]";
+            case 'w' -> "[a-zA-Z_0-9]";
+            case 'W' -> "[^a-zA-Z_0-9]";
+            case 's' -> "[ \t\n\f\r]";
+            case 'S' -> "[^ \t\n\f\r]";
+            default -> literal(e);
+        };
+    }
+
+    /** Échappement à l'intérieur de [...] : les classes positives s'insèrent, les négatives n'ont pas d'équivalent. */
+    private static String classEscape(char e, String regex) {
+        return switch (e) {
+            case 'd' -> "0-9";
+            case 'w' -> "a-zA-Z_0-9";
+            case 's' -> " \t\n\f\r";
+            case 'D', 'W', 'S' -> throw new IllegalArgumentException("\\" + e + " inside [...] is not supported: " + regex);
+            default -> literal(e);
+        };
+    }
+
+    /** \t \n \r \f → le caractère lui-même ; tout autre échappement reste un littéral échappé pour brics. */
+    private static String literal(char e) {
+        return switch (e) {
+            case 't' -> "\t";
+            case 'n' -> "\n";
+            case 'r' -> "\r";
+            case 'f' -> "\f";
+            default -> "\\" + e;
+        };
+    }
+
+    /** Plus longue chaîne acceptée (langage fini : le DFA minimal est acyclique). */
+    private int longest(int s, int[] memo) {
+        if (memo[s] != 0) return memo[s] - 1;
+        int best = accept[s] ? 0 : -1;
+        for (int t = tStart[s]; t < tStart[s + 1]; t++) {
+            int sub = longest(tDest[t], memo);
+            if (sub >= 0) best = Math.max(best, sub + 1);
+        }
+        memo[s] = best + 1;
+        return best;
+    }
+
+    private static long satAdd(long a, long b) {
+        long r = a + b;
+        return (r < 0 || r == Long.MAX_VALUE) ? Long.MAX_VALUE : r;
+    }
+
+    private static long satMul(long a, long b) {
+        if (a == 0 || b == 0) return 0;
+        return (b >= Long.MAX_VALUE / a) ? Long.MAX_VALUE : a * b;
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.SplittableRandom;
+
+/**
+ * Génère des chaînes conformes à une regex, uniformément sur son langage (borné si infini).
+ * La regex est compilée une seule fois (CompiledRegex) ; chaque tirage parcourt le DFA et écrit
+ * dans un tampon réutilisé. nextInto() évite même la String finale.
+ */
+public final class AutomatonRegexGenerator implements ValueGenerator<String> {
+    private final CompiledRegex compiled;
+    private final SplittableRandom rnd;
+    private final char[] scratch;
+
+    public AutomatonRegexGenerator(CompiledRegex compiled, Long seed) {
+        this(compiled, seed == null ? new SplittableRandom() : new SplittableRandom(seed));
+    }
+
+    private AutomatonRegexGenerator(CompiledRegex compiled, SplittableRandom rnd) {
+        this.compiled = compiled;
+        this.rnd = rnd;
+        this.scratch = new char[compiled.maxLength()];
+    }
+
+    @Override
+    public String next() {
+        return new String(scratch, 0, compiled.sample(rnd, scratch, 0));
+    }
+
+    /** Ajoute la prochaine valeur à sb (sans String intermédiaire). */
+    public void nextInto(StringBuilder sb) {
+        sb.append(scratch, 0, compiled.sample(rnd, scratch, 0));
+    }
+
+    /** Écrit la prochaine valeur dans dst (capacité >= maxLength() depuis off) ; renvoie l'offset de fin. */
+    public int nextInto(char[] dst, int off) {
+        return compiled.sample(rnd, dst, off);
+    }
+
+    public int maxLength() { return compiled.maxLength(); }
+
+    @Override
+    public boolean isSplittable() { return true; }
+
+    @Override
+    public AutomatonRegexGenerator split(long count) {
+        return new AutomatonRegexGenerator(compiled, rnd.split());
+    }
+}
+
+
+
+package com.acme.datagen;
+
+import java.util.List;
+
+/** Usines statiques et builder fluide. */
+public final class DataGenerators {
+    private DataGenerators() {}
+
+    public static ValueGenerator<String> ofRegex(String regex) {
+        return new AutomatonRegexGenerator(CompiledRegex.compile(regex), null);
+    }
+    public static ValueGenerator<String> ofRegex(String regex, long seed) {
+        return new AutomatonRegexGenerator(CompiledRegex.compile(regex), seed);
+    }
+
+    public static <T> ValueGenerator<T> ofList(List<T> items, SelectionMode mode) {
+        return new ListPickerGenerator<>(items, mode, null);
+    }
+    public static <T> ValueGenerator<T> ofList(List<T> items, SelectionMode mode, long seed) {
+        return new ListPickerGenerator<>(items, mode, seed);
+    }
+
+    public static <T> ValueGenerator<T> unique(ValueGenerator<T> delegate, int expectedCardinality) {
+        return ValueGenerator.unique(delegate, expectedCardinality, 10_000);
+    }
+
+    /** Unicité par rejet avec la mémoire choisie (SET, OFF_HEAP ou BLOOM à 1 % de faux positifs). */
+    public static <T> ValueGenerator<T> unique(ValueGenerator<T> delegate, int expectedCardinality, UniqueMode mode) {
+        SeenSet<T> seen = switch (mode == null ? UniqueMode.SET : mode) {
+            case SET -> SeenSet.heap(expectedCardinality);
+            case OFF_HEAP -> SeenSet.offHeap(expectedCardinality);
+            case BLOOM -> SeenSet.bloom(expectedCardinality, 0.01);
+            case PERMUTATION -> throw new IllegalArgumentException("PERMUTATION requires an IndexedSpace, use uniqueOf(...)");
+        };
+        return new UniqueGenerator<>(delegate, seen, 10_000);
+    }
+
+    /** Unicité sans ensemble : parcours d'un espace indexé selon une permutation pseudo-aléatoire seedée. */
+    public static <T> ValueGenerator<T> uniqueOf(IndexedSpace<T> space, long seed) {
+        return new PermutationUniqueGenerator<>(space, seed);
+    }
+
+    /** Lot de `rows` lignes en colonnes (result[colonne][ligne]) : un fill() par colonne, pas d'appel par valeur. */
+    public static Object[][] columns(int rows, ValueGenerator<?>... generators) {
+        if (rows < 0) throw new IllegalArgumentException("rows must be >= 0");
+        Object[][] cols = new Object[generators.length][];
+        for (int c = 0; c < generators.length; c++) {
+            cols[c] = new Object[rows];
+            fillColumn(generators[c], cols[c]);
+        }
+        return cols;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void fillColumn(ValueGenerator<T> g, Object[] column) {
+        g.fill((T[]) column, 0, column.length);
+    }
+
+    // ---- Builder fluide ----
+
+    public static RegexBuilder regex(String pattern) { return new RegexBuilder(pattern); }
+    public static <T> ListBuilder<T> list(List<T> items) { return new ListBuilder<>(items); }
+    public static IntBuilder ints() { return new IntBuilder(); }
+    public static LongBuilder longs() { return new LongBuilder(); }
+    public static DoubleBuilder doubles() { return new DoubleBuilder(); }
+
+    public static final class RegexBuilder {
+        private final String pattern;
+        private Long seed;
+        private boolean unique;
+        private int cardinality = 1024;
+        private UniqueMode uniqueMode = UniqueMode.SET;
+        private int maxLength = CompiledRegex.DEFAULT_MAX_LENGTH;
+
+        private RegexBuilder(String pattern) { this.pattern = pattern; }
+
+        public RegexBuilder seed(long s) { this.seed = s; return this; }
+        /** Borne de longueur pour les regex au langage infini ("+", "*"). */
+        public RegexBuilder maxLength(int l) { this.maxLength = l; return this; }
+        public RegexBuilder unique(boolean u) { this.unique = u; return this; }
+        public RegexBuilder uniqueMode(UniqueMode m) { this.unique = true; this.uniqueMode = m; return this; }
+        public RegexBuilder expectedCardinality(int c) { this.cardinality = c; return this; }
+
+        public ValueGenerator<String> build() {
+            CompiledRegex compiled = CompiledRegex.compile(pattern, maxLength);
+            if (unique && uniqueMode == UniqueMode.PERMUTATION) {
+                return uniqueOf(compiled, seed == null ? System.nanoTime() : seed);
+            }
+            ValueGenerator<String> g = new AutomatonRegexGenerator(compiled, seed);
+            return unique ? DataGenerators.unique(g, cardinality, uniqueMode) : g;
+        }
+    }
+
+    public static final class ListBuilder<T> {
+        private final List<T> items;
+        private SelectionMode mode = SelectionMode.RANDOM;
+        private Long seed;
+        private boolean unique;
+        private int cardinality = 1024;
+        private UniqueMode uniqueMode = UniqueMode.SET;
+        private double[] weights;
+        private double skew = 1.0;
+        private BlockSequence sequence;
+
+        private ListBuilder(List<T> items) { this.items = items; }
+
+        public ListBuilder<T> mode(SelectionMode m) { this.mode = m; return this; }
+        /** Poids par élément (même ordre que la liste) ; passe en WEIGHTED. */
+        public ListBuilder<T> weights(double... w) { this.mode = SelectionMode.WEIGHTED; this.weights = w.clone(); return this; }
+        /** Asymétrie de la loi de Zipf (0 = uniforme, 1 = Zipf classique, > 1 = très concentré) ; passe en ZIPF. */
+        public ListBuilder<T> skew(double s) { this.mode = SelectionMode.ZIPF; this.skew = s; return this; }
+        public ListBuilder<T> seed(long s) { this.seed = s; return this; }
+        public ListBuilder<T> unique(boolean u) { this.unique = u; return this; }
+        /** PERMUTATION ignore le SelectionMode : l'ordre est celui de la permutation seedée. */
+        public ListBuilder<T> uniqueMode(UniqueMode m) { this.unique = true; this.uniqueMode = m; return this; }
+        public ListBuilder<T> expectedCardinality(int c) { this.cardinality = c; return this; }
+        /** Curseur CYCLIC partagé (ex. SequenceRegistry) au lieu d'une séquence ordonnée propre. */
+        public ListBuilder<T> sequence(BlockSequence s) { this.sequence = s; return this; }
+
+        public ValueGenerator<T> build() {
+            if (unique && uniqueMode == UniqueMode.PERMUTATION) {
+                return uniqueOf(IndexedSpace.ofList(items), seed == null ? System.nanoTime() : seed);
+            }
+            double[] w = (mode == SelectionMode.ZIPF) ? AliasTable.zipfWeights(items.size(), skew) : weights;
+            ValueGenerator<T> g = new ListPickerGenerator<>(items, mode, w, seed, sequence);
+            return unique ? DataGenerators.unique(g, cardinality, uniqueMode) : g;
+        }
+    }
+
+    // ---- Numériques primitifs (sans boxing) ----
+    // Par défaut : UNIFORM sur [0, MAX] (doubles : [0, 1)) ; normal/logNormal tronquées à range(min, max) si fourni.
+
+    public static final class IntBuilder {
+        private Distribution dist = Distribution.UNIFORM;
+        private double a, b;
+        private Integer min, max;
+        private Long seed;
+
+        private IntBuilder() {}
+
+        public IntBuilder range(int min, int max) { this.min = min; this.max = max; return this; }
+        public IntBuilder uniform() { this.dist = Distribution.UNIFORM; return this; }
+        public IntBuilder normal(double mean, double stdDev) { this.dist = Distribution.NORMAL; this.a = mean; this.b = stdDev; return this; }
+        public IntBuilder logNormal(double mu, double sigma) { this.dist = Distribution.LOG_NORMAL; this.a = mu; this.b = sigma; return this; }
+        public IntBuilder seed(long s) { this.seed = s; return this; }
+
+        public IntValueGenerator build() {
+            long lo = (min != null) ? min : (dist == Distribution.UNIFORM ? 0 : Integer.MIN_VALUE);
+            long hi = (max != null) ? max : Integer.MAX_VALUE;
+            return new SampledGenerators.Ints(new NumericSampler(dist, a, b, lo, hi, lo, hi, seed));
+        }
+    }
+
+    public static final class LongBuilder {
+        private Distribution dist = Distribution.UNIFORM;
+        private double a, b;
+        private Long min, max;
+        private Long seed;
+
+        private LongBuilder() {}
+
+        public LongBuilder range(long min, long max) { this.min = min; this.max = max; return this; }
+        public LongBuilder uniform() { this.dist = Distribution.UNIFORM; return this; }
+        public LongBuilder normal(double mean, double stdDev) { this.dist = Distribution.NORMAL; this.a = mean; this.b = stdDev; return this; }
+        public LongBuilder logNormal(double mu, double sigma) { this.dist = Distribution.LOG_NORMAL; this.a = mu; this.b = sigma; return this; }
+        public LongBuilder seed(long s) { this.seed = s; return this; }
+
+        public LongValueGenerator build() {
+            long lo = (min != null) ? min : (dist == Distribution.UNIFORM ? 0 : Long.MIN_VALUE);
+            long hi = (max != null) ? max : Long.MAX_VALUE;
+            return new SampledGenerators.Longs(new NumericSampler(dist, a, b, lo, hi, lo, hi, seed));
+        }
+    }
+
+    public static final class DoubleBuilder {
+        private Distribution dist = Distribution.UNIFORM;
+        private double a, b;
+        private Double min, max;
+        private Long seed;
+
+        private DoubleBuilder() {}
+
+        public DoubleBuilder range(double min, double max) { this.min = min; this.max = max; return this; }
+        public DoubleBuilder uniform() { this.dist = Distribution.UNIFORM; return this; }
+        public DoubleBuilder normal(double mean, double stdDev) { this.dist = Distribution.NORMAL; this.a = mean; this.b = stdDev; return this; }
+        public DoubleBuilder logNormal(double mu, double sigma) { this.dist = Distribution.LOG_NORMAL; this.a = mu; this.b = sigma; return this; }
+        public DoubleBuilder seed(long s) { this.seed = s; return this; }
+
+        public DoubleValueGenerator build() {
+            double lo = (min != null) ? min : (dist == Distribution.UNIFORM ? 0.0 : Double.NEGATIVE_INFINITY);
+            double hi = (max != null) ? max : (dist == Distribution.UNIFORM ? 1.0 : Double.POSITIVE_INFINITY);
+            return new SampledGenerators.Doubles(new NumericSampler(dist, a, b, 0, 0, lo, hi, seed));
+        }
+    }
+}
+
+
+<dependency>
+  <groupId>com.github.mifmif</groupId>
+  <artifactId>generex</artifactId>
+  <version>1.0.2</version>
+</dependency>
+
+
+import com.acme.datagen.*;
+
+import java.util.List;
+
+public class Demo {
+    public static void main(String[] args) {
+        // 1) Regex (email-like simple) — seedé pour reproductibilité
+        ValueGenerator<String> emails = DataGenerators
+                .regex("[a-z]{5,10}\\.[a-z]{5,10}@example\\.com")
+                .seed(42L)
+                .unique(true)                 // refuse doublons
+                .expectedCardinality(10_000)  // taille attendue
+                .build();
+
+        System.out.println(emails.take(5));
+
+        // 2) Liste — mode CYCLIC (utile pour ID prédictible ou jeux maîtrisés)
+        ValueGenerator<String> country = DataGenerators
+                .list(List.of("FR", "DE", "NG"))
+                .mode(SelectionMode.CYCLIC)
+                .build();
+
+        System.out.println(country.take(7)); // [FR, DE, NG, FR, DE, NG, FR]
+
+        // 3) Liste — mode SHUFFLE_NO_REPEAT (pas de doublon dans un cycle)
+        ValueGenerator<String> names = DataGenerators
+                .list(List.of("Alice","Bob","Chloé","David"))
+                .mode(SelectionMode.SHUFFLE_NO_REPEAT)
+                .seed(2025L)
+                .build();
+
+        System.out.println(names.take(6)); // ex: [Chloé, Bob, Alice, David, ...re-shuffle..., Chloé]
+
+        // 4) Unicité forcée sur une liste (avec tirage RANDOM)
+        ValueGenerator<String> uniqueNames = DataGenerators.unique(
+                DataGenerators.ofList(List.of("A","B","C","D"), SelectionMode.RANDOM, 7L),
+                4 // cardinalité
+        );
+        System.out.println(uniqueNames.take(4)); // 4 uniques, sinon IllegalStateException
 
+        // 5) Génération parallèle — un sous-générateur (split) par tranche, pas de verrou
+        ValueGenerator<String> refs = DataGenerators.regex("REF-[0-9]{8}").seed(11L).build();
+        System.out.println(refs.stream(1_000_000).parallel().filter(r -> r.endsWith("0")).count());
+
+        // 6) Numériques sans boxing — montants log-normaux bornés, remplis en bloc
+        DoubleValueGenerator amounts = DataGenerators.doubles()
+                .logNormal(3.5, 0.8)
+                .range(1.0, 5_000.0)
+                .seed(99L)
+                .build();
+        double[] col = new double[10_000];
+        amounts.fill(col);
+        System.out.println(DataGenerators.ints().range(1, 5).seed(1L).build().intStream(10).boxed().toList());
+
+        // 7) Unicité sans ensemble : permutation de l'espace de la regex (100M identifiants, mémoire constante)
+        ValueGenerator<String> ids = DataGenerators
+                .regex("FR76[0-9]{8}")
+                .seed(7L)
+                .uniqueMode(UniqueMode.PERMUTATION)
+                .build();
+        System.out.println(ids.take(3));
+
+        // 8) Lot en colonnes — un fill() par colonne au lieu d'un next() par valeur
+        Object[][] batch = DataGenerators.columns(5_000, country, names, refs);
+        System.out.println(batch[0].length + " lignes, " + batch.length + " colonnes");
+
+        // 9) Clés chaudes — quelques marchands concentrent le trafic
+        ValueGenerator<String> currency = DataGenerators
+                .list(List.of("EUR", "USD", "GBP", "XOF"))
+                .weights(70, 20, 8, 2)
+                .seed(3L)
+                .build();
+        ValueGenerator<String> merchant = DataGenerators
+                .list(List.of("M001", "M002", "M003", "M004", "M005", "M006"))
+                .skew(1.2)
+                .seed(4L)
+                .build();
+        System.out.println(currency.take(10) + " " + merchant.take(10));
+    }
+}
+
+
+
+
+
+package com.acme.datagen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeistelPermutationTest {
+
+    @Test
+    void isABijectionOnTheDomain() {
+        for (long n : new long[] {1, 2, 3, 7, 64, 1000, 4097}) {
+            for (long seed : new long[] {0, 42, -1}) {
+                FeistelPermutation p = new FeistelPermutation(n, seed);
+                BitSet seen = new BitSet((int) n);
+                for (long x = 0; x < n; x++) {
+                    long y = p.apply(x);
+                    assertTrue(y >= 0 && y < n, "hors domaine : " + y);
+                    assertFalse(seen.get((int) y), "image en double : " + y + " (n=" + n + ", seed=" + seed + ")");
+                    seen.set((int) y);
+                }
+                assertEquals(n, seen.cardinality());
+            }
+        }
+    }
+
+    @Test
+    void staysInjectiveOnTheLargestDomain() {
+        long n = 1L << 62;
+        FeistelPermutation p = new FeistelPermutation(n, 7);
+        Set<Long> images = new HashSet<>();
+        for (long x = 0; x < 10_000; x++) {
+            long y = p.apply(n - 1 - x);
+            assertTrue(y >= 0 && y < n);
+            assertTrue(images.add(y));
+        }
+    }
+
+    @Test
+    void seedSelectsThePermutation() {
+        FeistelPermutation a = new FeistelPermutation(1000, 1), b = new FeistelPermutation(1000, 2);
+        long[] ya = new long[1000], yb = new long[1000];
+        for (int x = 0; x < 1000; x++) {
+            ya[x] = a.apply(x);
+            yb[x] = b.apply(x);
+        }
+        assertFalse(Arrays.equals(ya, yb));
+        long[] again = new long[1000];
+        for (int x = 0; x < 1000; x++) again[x] = new FeistelPermutation(1000, 1).apply(x);
+        assertArrayEquals(ya, again);
+    }
+
+    @Test
+    void rejectsOutOfRangeInputsAndDomains() {
+        FeistelPermutation p = new FeistelPermutation(10, 0);
+        assertThrows(IndexOutOfBoundsException.class, () -> p.apply(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> p.apply(10));
+        assertThrows(IllegalArgumentException.class, () -> new FeistelPermutation(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FeistelPermutation((1L << 62) + 1, 0));
+    }
+}
+
+
+package com.acme.datagen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledRegexTest {
+
+    @Test
+    void countsAndIndexesAFiniteLanguageInOrder() {
+        CompiledRegex r = CompiledRegex.compile("[A-C][0-9]{2}");
+        assertEquals(300, r.size());
+        assertEquals("A00", r.at(0));
+        assertEquals("A01", r.at(1));
+        assertEquals("B00", r.at(100));
+        assertEquals("C99", r.at(299));
+
+        List<String> all = all(r);
+        assertEquals(300, new HashSet<>(all).size());
+        assertTrue(all.stream().allMatch(Pattern.compile("[A-C][0-9]{2}").asMatchPredicate()));
+        assertEquals(all.stream().sorted().toList(), all);
+    }
+
+    @Test
+    void boundsAnInfiniteLanguageByMaxLength() {
+        CompiledRegex r = CompiledRegex.compile("[ab]+", 3);
+        assertEquals(2 + 4 + 8, r.size());
+        List<String> all = all(r);
+        assertEquals(r.size(), new HashSet<>(all).size());
+        assertTrue(all.stream().allMatch(s -> s.length() >= 1 && s.length() <= 3 && s.matches("[ab]+")));
+        assertEquals("a", r.at(0));
+    }
+
+    @Test
+    void countsEachBranchOfAnAlternation() {
+        CompiledRegex r = CompiledRegex.compile("ab|c|[0-9]{3}");
+        assertEquals(1 + 1 + 1000, r.size());
+        List<String> all = all(r);
+        assertTrue(all.contains("ab") && all.contains("c") && all.contains("000") && all.contains("999"));
+        assertEquals(r.size(), new HashSet<>(all).size());
+    }
+
+    @Test
+    void writesIntoTheCallerBufferAtTheOffset() {
+        CompiledRegex r = CompiledRegex.compile("[A-C][0-9]{2}");
+        char[] buf = new char[8];
+        int end = r.at(299, buf, 2);
+        assertEquals(5, end);
+        assertEquals("C99", new String(buf, 2, end - 2));
+    }
+
+    @Test
+    void rejectsOutOfRangeIndexes() {
+        CompiledRegex r = CompiledRegex.compile("[A-C][0-9]{2}");
+        assertThrows(IndexOutOfBoundsException.class, () -> r.at(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> r.at(300));
+    }
+
+    @Test
+    void samplesOnlyWordsOfTheLanguage() {
+        CompiledRegex r = CompiledRegex.compile("[A-Z]{2}[0-9]{4}");
+        SplittableRandom rnd = new SplittableRandom(1);
+        char[] buf = new char[r.maxLength()];
+        for (int i = 0; i < 1000; i++) {
+            int end = r.sample(rnd, buf, 0);
+            assertTrue(new String(buf, 0, end).matches("[A-Z]{2}[0-9]{4}"));
+        }
+    }
+
+    private static List<String> all(CompiledRegex r) {
+        List<String> out = new ArrayList<>();
+        for (long i = 0; i < r.size(); i++) out.add(r.at(i));
+        return out;
+    }
+}